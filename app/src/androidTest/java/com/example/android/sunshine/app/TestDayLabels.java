@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.test.AndroidTestCase;
+import android.text.format.Time;
+import android.util.Log;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/*
+    Checks the cached day labels against SimpleDateFormat in a spread of time zones, including
+    ones far from UTC and ones with half hour offsets and daylight saving.
+ */
+public class TestDayLabels extends AndroidTestCase {
+    public static final String LOG_TAG = TestDayLabels.class.getSimpleName();
+
+    private static final String[] TIME_ZONES = {
+            "UTC",
+            "America/Los_Angeles",
+            "America/St_Johns",
+            "Asia/Kolkata",
+            "Australia/Lord_Howe",
+            "Pacific/Kiritimati",
+            "Pacific/Pago_Pago"
+    };
+
+    // A few "now"s: a normal day, the night daylight saving starts in the US, and New Year's Eve
+    private static final long[] NOW = {
+            1458000000000L,     // 2016-03-15
+            1457863200000L,     // 2016-03-13, around the US spring forward
+            1483225200000L      // 2016-12-31/2017-01-01
+    };
+
+    private static final int DAYS = 40;
+
+    private SimpleDateFormat createFormat(String pattern, TimeZone timeZone) {
+        SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.US);
+        format.setTimeZone(timeZone);
+        return format;
+    }
+
+    public void testLabelsAcrossTimeZones() {
+        String today = mContext.getString(R.string.today);
+        String tomorrow = mContext.getString(R.string.tomorrow);
+        String fullFriendlyFormat = mContext.getString(R.string.format_full_friendly_date);
+
+        for (String id : TIME_ZONES) {
+            TimeZone timeZone = TimeZone.getTimeZone(id);
+            SimpleDateFormat dayFormat = createFormat("EEEE", timeZone);
+            SimpleDateFormat monthDayFormat = createFormat("MMMM dd", timeZone);
+            SimpleDateFormat shortFormat = createFormat("EEE MMM dd", timeZone);
+
+            for (long now : NOW) {
+                DayLabels labels = new DayLabels(mContext, Locale.US, timeZone);
+
+                // Local midnights from two days ago on, stored the way the sync stores them
+                Calendar calendar = new GregorianCalendar(timeZone, Locale.US);
+                calendar.setTimeInMillis(now);
+                calendar.set(Calendar.HOUR_OF_DAY, 0);
+                calendar.set(Calendar.MINUTE, 0);
+                calendar.set(Calendar.SECOND, 0);
+                calendar.set(Calendar.MILLISECOND, 0);
+                calendar.add(Calendar.DAY_OF_MONTH, -2);
+
+                for (int offset = -2; offset < DAYS; offset++, calendar.add(Calendar.DAY_OF_MONTH, 1)) {
+                    long date = calendar.getTimeInMillis();
+                    String where = id + " now=" + now + " offset=" + offset;
+
+                    String dayName = (offset == 0) ? today : (offset == 1) ? tomorrow :
+                            dayFormat.format(date);
+                    String monthDay = monthDayFormat.format(date);
+                    String friendly = (offset < 7) ? dayName : shortFormat.format(date);
+
+                    assertEquals(where, dayName, labels.getDayName(date, now));
+                    assertEquals(where, monthDay, labels.getFormattedMonthDay(date, now));
+                    assertEquals(where, friendly, labels.getFriendlyDayString(date, false, now));
+                    String fullFriendly = String.format(fullFriendlyFormat, dayName, monthDay);
+                    assertEquals(where, (offset == 0) ? fullFriendly : friendly,
+                            labels.getFriendlyDayString(date, true, now));
+                    assertEquals(where, fullFriendly, labels.getFullFriendlyDayString(date, now));
+                }
+            }
+        }
+    }
+
+    public void testWindowMovesWithTheDay() {
+        TimeZone timeZone = TimeZone.getTimeZone("America/Los_Angeles");
+        DayLabels labels = new DayLabels(mContext, Locale.US, timeZone);
+        long now = NOW[0];
+        long tomorrowDate = now + 24 * 60 * 60 * 1000;
+
+        assertEquals(mContext.getString(R.string.tomorrow), labels.getDayName(tomorrowDate, now));
+        assertEquals(mContext.getString(R.string.today), labels.getDayName(tomorrowDate, tomorrowDate));
+    }
+
+    public void testMonthAndDayMatchCalendar() {
+        Calendar calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"), Locale.US);
+        calendar.clear();
+        calendar.set(1900, Calendar.MARCH, 1);
+        int julianDay = Time.getJulianDay(calendar.getTimeInMillis(), 0);
+        for (int i = 0; i < 200 * 366; i++, julianDay++, calendar.add(Calendar.DAY_OF_MONTH, 1)) {
+            int monthDay = DayLabels.getMonthAndDay(julianDay);
+            assertEquals(calendar.get(Calendar.MONTH), monthDay >> 8);
+            assertEquals(calendar.get(Calendar.DAY_OF_MONTH), monthDay & 0xff);
+            assertEquals(calendar.get(Calendar.DAY_OF_WEEK), DayLabels.getDayOfWeek(julianDay));
+        }
+    }
+
+    /*
+        Benchmark: the friendly day string the way Utility used to build it, with a new Time and
+        SimpleDateFormat per call, against the cached labels.
+     */
+    public void testFriendlyDayBenchmark() {
+        final int iterations = 2000;
+        DayLabels labels = new DayLabels(mContext, Locale.getDefault(), TimeZone.getDefault());
+        long now = System.currentTimeMillis();
+        long day = 24 * 60 * 60 * 1000;
+        int sink = 0;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            long date = now + (i % 14) * day;
+            Time time = new Time();
+            time.setToNow();
+            int julianDay = Time.getJulianDay(date, time.gmtoff);
+            int currentJulianDay = Time.getJulianDay(System.currentTimeMillis(), time.gmtoff);
+            String label;
+            if (julianDay < currentJulianDay + 7) {
+                label = new SimpleDateFormat("EEEE").format(date);
+            } else {
+                label = new SimpleDateFormat("EEE MMM dd").format(date);
+            }
+            sink += label.length();
+        }
+        long legacyNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += labels.getFriendlyDayString(now + (i % 14) * day, false).length();
+        }
+        long cachedNanos = System.nanoTime() - start;
+
+        Log.i(LOG_TAG, "testFriendlyDayBenchmark: " + legacyNanos / iterations +
+                "ns per label formatting each time, " + cachedNanos / iterations +
+                "ns per label from the cache (" + sink + ")");
+    }
+}
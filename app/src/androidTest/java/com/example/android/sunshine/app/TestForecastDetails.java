@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.database.MatrixCursor;
+import android.test.AndroidTestCase;
+
+/*
+    Checks that the pre-formatted details match what DetailFragment used to format while binding
+    its own row.
+ */
+public class TestForecastDetails extends AndroidTestCase {
+
+    private static final long DAY = 1000 * 60 * 60 * 24;
+    private static final int ROWS = 14;
+
+    public void testDetailsMatchBindFormatting() {
+        MatrixCursor cursor = new MatrixCursor(ForecastDetails.DETAIL_COLUMNS);
+        for (int i = 0; i < ROWS; i++) {
+            cursor.addRow(new Object[]{
+                    (1000 + i) * DAY,
+                    40.5f + i,
+                    1013.25f - i,
+                    2.5f * i,
+                    i * 360f / ROWS
+            });
+        }
+
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            ForecastDetails details = ForecastDetails.fromCursor(mContext, cursor);
+            float humidity = cursor.getFloat(ForecastDetails.COL_WEATHER_HUMIDITY);
+            float pressure = cursor.getFloat(ForecastDetails.COL_WEATHER_PRESSURE);
+            String wind = Utility.getFormattedWind(mContext,
+                    cursor.getFloat(ForecastDetails.COL_WEATHER_WIND_SPEED),
+                    cursor.getFloat(ForecastDetails.COL_WEATHER_DEGREES));
+
+            assertEquals(cursor.getLong(ForecastDetails.COL_WEATHER_DATE), details.mDate);
+            assertEquals(mContext.getString(R.string.format_humidity, humidity),
+                    details.mHumidityText);
+            assertEquals(mContext.getString(R.string.a11y_humidity, details.mHumidityText),
+                    details.mHumidityA11y);
+            assertEquals(wind, details.mWindText);
+            assertEquals(mContext.getString(R.string.a11y_wind, wind), details.mWindA11y);
+            assertEquals(mContext.getString(R.string.format_pressure, pressure),
+                    details.mPressureText);
+            assertEquals(mContext.getString(R.string.a11y_pressure, details.mPressureText),
+                    details.mPressureA11y);
+        }
+        cursor.close();
+    }
+}
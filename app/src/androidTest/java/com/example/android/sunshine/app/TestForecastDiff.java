@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.support.v7.widget.RecyclerView;
+import android.test.AndroidTestCase;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+
+import java.util.ArrayList;
+
+/*
+    Replays forecast diffs against a plain list and a stable-id adapter, to make sure the
+    notifications we dispatch really turn the old list into the new one and that the selection
+    stays on its day.
+ */
+public class TestForecastDiff extends AndroidTestCase {
+
+    private static final long DAY = 1000 * 60 * 60 * 24;
+
+    static ForecastItem createItem(long day, String high) {
+        return new ForecastItem(day * DAY, 800, "Day " + day, "Day " + day, 0, 0, null,
+                "Clear", "Clear", high, high, "1", "1");
+    }
+
+    static ForecastSnapshot createSnapshot(long firstDay, int count, String high) {
+        ArrayList<ForecastItem> items = new ArrayList<ForecastItem>();
+        for (long day = firstDay; day < firstDay + count; day++) {
+            items.add(createItem(day, high));
+        }
+        return new ForecastSnapshot(items, "0", "0");
+    }
+
+    /*
+        Applies the diff ops to a copy of the old list, and checks we end up with the new list and
+        that exactly the changed rows were flagged.
+     */
+    private void assertDiffRebuilds(ForecastSnapshot oldSnapshot, ForecastSnapshot newSnapshot) {
+        ForecastDiff diff = ForecastDiff.compute(oldSnapshot, newSnapshot);
+        ArrayList<ForecastItem> replay = new ArrayList<ForecastItem>(oldSnapshot.getItems());
+        boolean[] changed = new boolean[newSnapshot.size()];
+        int[] ops = diff.getOps();
+        for (int i = 0; i < ops.length; i += 3) {
+            int position = ops[i + 1];
+            int count = ops[i + 2];
+            for (int j = 0; j < count; j++) {
+                switch (ops[i]) {
+                    case ForecastDiff.OP_REMOVE:
+                        replay.remove(position);
+                        break;
+                    case ForecastDiff.OP_INSERT:
+                        replay.add(position + j, newSnapshot.get(position + j));
+                        break;
+                    case ForecastDiff.OP_CHANGE:
+                        replay.set(position + j, newSnapshot.get(position + j));
+                        changed[position + j] = true;
+                        break;
+                }
+            }
+        }
+        assertEquals(newSnapshot.size(), replay.size());
+        for (int i = 0; i < replay.size(); i++) {
+            assertEquals("Error: Diff left the wrong day at " + i,
+                    newSnapshot.get(i).mDate, replay.get(i).mDate);
+            assertTrue("Error: Row " + i + " changed but was not rebound",
+                    changed[i] || replay.get(i).hasSameContents(newSnapshot.get(i)));
+        }
+        assertTrue(diff.appliesTo(oldSnapshot));
+        assertFalse(diff.appliesTo(newSnapshot));
+    }
+
+    public void testDiffRebuildsNewList() {
+        ForecastSnapshot week = createSnapshot(100, 14, "20");
+
+        // Nothing changed
+        assertTrue(ForecastDiff.compute(week, createSnapshot(100, 14, "20")).isEmpty());
+        // The day rolled over: one removed from the front, one added at the end
+        assertDiffRebuilds(week, createSnapshot(101, 14, "20"));
+        // Same days, new temperatures
+        assertDiffRebuilds(week, createSnapshot(100, 14, "25"));
+        // A different location with no days in common
+        assertDiffRebuilds(week, createSnapshot(300, 7, "20"));
+        // Loaded from nothing, and cleared
+        assertDiffRebuilds(ForecastSnapshot.EMPTY, week);
+        assertDiffRebuilds(week, ForecastSnapshot.EMPTY);
+
+        // Gaps on both sides
+        ArrayList<ForecastItem> gaps = new ArrayList<ForecastItem>();
+        gaps.add(createItem(99, "20"));
+        gaps.add(createItem(102, "20"));
+        gaps.add(createItem(103, "30"));
+        gaps.add(createItem(110, "20"));
+        gaps.add(createItem(120, "20"));
+        assertDiffRebuilds(week, new ForecastSnapshot(gaps, "0", "0"));
+    }
+
+    public void testRangesAreCoalesced() {
+        ForecastDiff diff = ForecastDiff.compute(createSnapshot(100, 14, "20"),
+                createSnapshot(105, 14, "20"));
+        // Five removed at the front, five inserted at the end, and the new first row rebound
+        assertEquals(9, diff.getOps().length);
+    }
+
+    /*
+        A bare stable-id adapter over a snapshot, so the ItemChoiceManager can observe it without
+        any views.
+     */
+    static class SnapshotAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+        ForecastSnapshot mSnapshot = ForecastSnapshot.EMPTY;
+
+        SnapshotAdapter() {
+            setHasStableIds(true);
+        }
+
+        void swap(ForecastSnapshot snapshot) {
+            ForecastDiff diff = ForecastDiff.compute(mSnapshot, snapshot);
+            mSnapshot = snapshot;
+            diff.dispatchTo(this);
+        }
+
+        @Override
+        public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return mSnapshot.get(position).mDate;
+        }
+
+        @Override
+        public int getItemCount() {
+            return mSnapshot.size();
+        }
+    }
+
+    public void testSelectionFollowsItsDay() {
+        SnapshotAdapter adapter = new SnapshotAdapter();
+        ItemChoiceManager icm = new ItemChoiceManager(adapter);
+        icm.setChoiceMode(AbsListView.CHOICE_MODE_SINGLE);
+        adapter.swap(createSnapshot(100, 14, "20"));
+
+        // Select day 105
+        icm.mCheckedIdStates.put(105 * DAY, 5);
+        icm.mCheckStates.put(5, true);
+
+        // Two days drop off the front
+        adapter.swap(createSnapshot(102, 14, "20"));
+        assertEquals(3, icm.getSelectedItemPosition());
+        assertTrue(icm.isItemChecked(3));
+
+        // Days are added in front, well beyond the old search distance
+        adapter.swap(createSnapshot(60, 60, "20"));
+        assertEquals(45, icm.getSelectedItemPosition());
+
+        // A full reload still finds it
+        adapter.notifyDataSetChanged();
+        assertEquals(45, icm.getSelectedItemPosition());
+
+        // And once the day is gone, so is the selection
+        adapter.swap(createSnapshot(200, 14, "20"));
+        assertEquals(RecyclerView.NO_POSITION, icm.getSelectedItemPosition());
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.database.MatrixCursor;
+import android.test.AndroidTestCase;
+import android.text.format.Time;
+import android.util.Log;
+
+/*
+    Checks that the pre-formatted list items match what the adapter used to format while binding,
+    and benchmarks the per-row cost of both.
+ */
+public class TestForecastItem extends AndroidTestCase {
+    public static final String LOG_TAG = TestForecastItem.class.getSimpleName();
+
+    private static final int ROWS = 14;
+    private static final int BENCHMARK_PASSES = 50;
+    private static final int[] WEATHER_IDS = {200, 300, 500, 511, 520, 600, 701, 761, 781, 800, 801, 803};
+
+    private MatrixCursor createForecastCursor() {
+        MatrixCursor cursor = new MatrixCursor(ForecastFragment.FORECAST_COLUMNS);
+        Time dayTime = new Time();
+        dayTime.setToNow();
+        int julianToday = Time.getJulianDay(System.currentTimeMillis(), dayTime.gmtoff);
+        for (int i = 0; i < ROWS; i++) {
+            cursor.addRow(new Object[]{
+                    i,
+                    dayTime.setJulianDay(julianToday + i),
+                    "Clear",
+                    20.5 + i,
+                    10.25 - i,
+                    "99705",
+                    WEATHER_IDS[i % WEATHER_IDS.length],
+                    "64.7488",
+                    "-147.353"
+            });
+        }
+        return cursor;
+    }
+
+    public void testItemsMatchBindFormatting() {
+        MatrixCursor cursor = createForecastCursor();
+        ForecastSnapshot snapshot = ForecastSnapshot.fromCursor(mContext, cursor);
+        assertEquals(ROWS, snapshot.size());
+        assertEquals("64.7488", snapshot.getCoordLat());
+        assertEquals("-147.353", snapshot.getCoordLong());
+
+        cursor.moveToPosition(-1);
+        for (int i = 0; cursor.moveToNext(); i++) {
+            ForecastItem item = snapshot.get(i);
+            int weatherId = cursor.getInt(ForecastFragment.COL_WEATHER_CONDITION_ID);
+            long date = cursor.getLong(ForecastFragment.COL_WEATHER_DATE);
+
+            assertEquals(date, item.mDate);
+            assertEquals(Utility.getFriendlyDayString(mContext, date, false), item.mDayText);
+            assertEquals(Utility.getFriendlyDayString(mContext, date, true), item.mLongDayText);
+            assertEquals(Utility.getIconResourceForWeatherCondition(weatherId), item.mIconResource);
+            assertEquals(Utility.getArtResourceForWeatherCondition(weatherId), item.mArtResource);
+            assertEquals(Utility.getStringForWeatherCondition(mContext, weatherId), item.mDescription);
+            assertEquals(Utility.formatTemperature(mContext,
+                    cursor.getDouble(ForecastFragment.COL_WEATHER_MAX_TEMP)), item.mHighText);
+            assertEquals(Utility.formatTemperature(mContext,
+                    cursor.getDouble(ForecastFragment.COL_WEATHER_MIN_TEMP)), item.mLowText);
+        }
+        cursor.close();
+    }
+
+    public void testBindCostBenchmark() {
+        MatrixCursor cursor = createForecastCursor();
+        int sink = 0;
+
+        // What onBindViewHolder used to do for every row it bound
+        long start = System.nanoTime();
+        for (int pass = 0; pass < BENCHMARK_PASSES; pass++) {
+            for (int i = 0; i < ROWS; i++) {
+                cursor.moveToPosition(i);
+                int weatherId = cursor.getInt(ForecastFragment.COL_WEATHER_CONDITION_ID);
+                int image = (i == 0) ? Utility.getArtResourceForWeatherCondition(weatherId)
+                        : Utility.getIconResourceForWeatherCondition(weatherId);
+                boolean local = Utility.usingLocalGraphics(mContext);
+                String day = Utility.getFriendlyDayString(mContext,
+                        cursor.getLong(ForecastFragment.COL_WEATHER_DATE), i == 0);
+                String description = Utility.getStringForWeatherCondition(mContext, weatherId);
+                String a11y = mContext.getString(R.string.a11y_forecast, description);
+                String high = Utility.formatTemperature(mContext,
+                        cursor.getDouble(ForecastFragment.COL_WEATHER_MAX_TEMP));
+                String highA11y = mContext.getString(R.string.a11y_high_temp, high);
+                String low = Utility.formatTemperature(mContext,
+                        cursor.getDouble(ForecastFragment.COL_WEATHER_MIN_TEMP));
+                String lowA11y = mContext.getString(R.string.a11y_low_temp, low);
+                sink += image + (local ? 1 : 0) + day.length() + a11y.length() +
+                        highA11y.length() + lowA11y.length();
+            }
+        }
+        long legacyNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        ForecastSnapshot snapshot = ForecastSnapshot.fromCursor(mContext, cursor);
+        long mapNanos = System.nanoTime() - start;
+
+        // What it does now
+        start = System.nanoTime();
+        for (int pass = 0; pass < BENCHMARK_PASSES; pass++) {
+            for (int i = 0; i < ROWS; i++) {
+                ForecastItem item = snapshot.get(i);
+                int image = (i == 0) ? item.mArtResource : item.mIconResource;
+                String day = (i == 0) ? item.mLongDayText : item.mDayText;
+                sink += image + (item.mArtUrl == null ? 1 : 0) + day.length() +
+                        item.mDescriptionA11y.length() + item.mHighA11y.length() +
+                        item.mLowA11y.length();
+            }
+        }
+        long itemNanos = System.nanoTime() - start;
+        cursor.close();
+
+        int binds = BENCHMARK_PASSES * ROWS;
+        Log.i(LOG_TAG, "testBindCostBenchmark: " + legacyNanos / binds + "ns per row formatting " +
+                "while binding, " + itemNanos / binds + "ns per row from items, plus " +
+                mapNanos / 1000 + "us to map " + ROWS + " rows in the background (" + sink + ")");
+        assertTrue("Binding from items should be cheaper than formatting", itemNanos < legacyNanos);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+public class TestForecastSnapshotFile extends AndroidTestCase {
+    public static final String LOG_TAG = TestForecastSnapshotFile.class.getSimpleName();
+
+    private static final long DAY = 1000 * 60 * 60 * 24;
+
+    @Override
+    protected void tearDown() throws Exception {
+        // It's only a cache; the next load writes it again
+        ForecastSnapshotFile.getFile(mContext).delete();
+        super.tearDown();
+    }
+
+    private ForecastSnapshot createSnapshot(int count) {
+        ArrayList<ForecastItem> items = new ArrayList<ForecastItem>();
+        long today = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            int weatherId = (i % 2 == 0) ? 800 : 501;
+            WeatherCondition condition = WeatherCondition.get(weatherId);
+            items.add(new ForecastItem(today + i * DAY, weatherId, "Day " + i, "Long day " + i,
+                    condition.mIconResource, condition.mArtResource,
+                    (i % 3 == 0) ? null : "http://example.com/art_" + i + ".png",
+                    "Descripción " + i, "Forecast: " + i, i + "°", "High " + i,
+                    -i + "°", "Low " + i));
+        }
+        return new ForecastSnapshot(items, "37.77", "-122.42");
+    }
+
+    public void testRoundTrip() {
+        ForecastSnapshot snapshot = createSnapshot(14);
+        ForecastSnapshotFile.write(mContext, Utility.getPreferredLocation(mContext), snapshot);
+
+        ForecastSnapshot read = ForecastSnapshotFile.read(mContext);
+        assertNotNull("Error: Saved snapshot was not read back", read);
+        assertEquals(snapshot.getCoordLat(), read.getCoordLat());
+        assertEquals(snapshot.getCoordLong(), read.getCoordLong());
+        assertEquals(snapshot.size(), read.size());
+        for (int i = 0; i < snapshot.size(); i++) {
+            assertTrue("Error: Row " + i + " changed on the way through the file",
+                    snapshot.get(i).hasSameContents(read.get(i)));
+        }
+    }
+
+    public void testOtherLocationIsIgnored() {
+        ForecastSnapshotFile.write(mContext, Utility.getPreferredLocation(mContext) + "-other",
+                createSnapshot(3));
+        assertNull("Error: Snapshot for another location was used",
+                ForecastSnapshotFile.read(mContext));
+    }
+
+    public void testEmptySnapshotRemovesFile() {
+        ForecastSnapshotFile.write(mContext, Utility.getPreferredLocation(mContext), createSnapshot(3));
+        ForecastSnapshotFile.write(mContext, Utility.getPreferredLocation(mContext),
+                ForecastSnapshot.EMPTY);
+        assertFalse(ForecastSnapshotFile.getFile(mContext).exists());
+        assertNull(ForecastSnapshotFile.read(mContext));
+    }
+
+    public void testTruncatedFileIsIgnored() throws IOException {
+        ForecastSnapshotFile.write(mContext, Utility.getPreferredLocation(mContext), createSnapshot(5));
+        long length = ForecastSnapshotFile.getFile(mContext).length();
+        FileOutputStream out = new FileOutputStream(ForecastSnapshotFile.getFile(mContext), true);
+        try {
+            out.getChannel().truncate(length / 2);
+        } finally {
+            out.close();
+        }
+        assertNull("Error: Truncated snapshot was used", ForecastSnapshotFile.read(mContext));
+    }
+
+    public void testReadBenchmark() {
+        ForecastSnapshotFile.write(mContext, Utility.getPreferredLocation(mContext), createSnapshot(14));
+        final int iterations = 200;
+        long start = System.nanoTime();
+        int sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            sink += ForecastSnapshotFile.read(mContext).size();
+        }
+        Log.i(LOG_TAG, "testReadBenchmark: " + (System.nanoTime() - start) / iterations / 1000 +
+                "us per read of 14 rows (" + sink + ")");
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.os.Bundle;
+import android.support.v7.widget.RecyclerView;
+import android.test.AndroidTestCase;
+import android.util.Log;
+import android.view.View;
+import android.widget.AbsListView;
+
+import java.util.ArrayList;
+
+/*
+    Exercises the selection on long lists through ForecastAdapter, which finds ids through its
+    snapshot's date index, in both choice modes.
+ */
+public class TestItemChoiceManager extends AndroidTestCase {
+    public static final String LOG_TAG = TestItemChoiceManager.class.getSimpleName();
+
+    private static final long DAY = 1000 * 60 * 60 * 24;
+    private static final int LONG_LIST = 3000;
+
+    private ForecastAdapter createAdapter(int choiceMode) {
+        return new ForecastAdapter(mContext, null, new View(mContext), choiceMode);
+    }
+
+    // A snapshot with no diff attached, so the adapter reports a full data set change
+    private static ForecastSnapshot createSnapshot(long firstDay, int count) {
+        return TestForecastDiff.createSnapshot(firstDay, count, "20");
+    }
+
+    public void testIndexOfDate() {
+        ForecastSnapshot snapshot = createSnapshot(100, LONG_LIST);
+        for (int i = 0; i < LONG_LIST; i++) {
+            assertEquals(i, snapshot.indexOfDate((100 + i) * DAY));
+        }
+        assertEquals(-1, snapshot.indexOfDate(99 * DAY));
+        assertEquals(-1, snapshot.indexOfDate((100 + LONG_LIST) * DAY));
+        assertEquals(-1, snapshot.indexOfDate(100 * DAY + 1));
+        assertEquals(-1, ForecastSnapshot.EMPTY.indexOfDate(0));
+
+        // Days an hour short or long, as around daylight saving changes, and gaps
+        ArrayList<ForecastItem> items = new ArrayList<ForecastItem>();
+        long[] dates = {0, DAY - 3600000, 2 * DAY, 3 * DAY + 3600000, 10 * DAY, 11 * DAY};
+        for (long date : dates) {
+            items.add(new ForecastItem(date, 800, "", "", 0, 0, null, "", "", "", "", "", ""));
+        }
+        ForecastSnapshot uneven = new ForecastSnapshot(items, "0", "0");
+        for (int i = 0; i < dates.length; i++) {
+            assertEquals(i, uneven.indexOfDate(dates[i]));
+        }
+    }
+
+    public void testPositionForItemId() {
+        // What ForecastFragment uses to find a deep linked day
+        ForecastAdapter adapter = createAdapter(AbsListView.CHOICE_MODE_NONE);
+        assertEquals(RecyclerView.NO_POSITION, adapter.getPositionForItemId(1000 * DAY));
+        adapter.swapSnapshot(createSnapshot(1000, LONG_LIST));
+        assertEquals(0, adapter.getPositionForItemId(1000 * DAY));
+        assertEquals(LONG_LIST - 1, adapter.getPositionForItemId((1000 + LONG_LIST - 1) * DAY));
+        assertEquals(RecyclerView.NO_POSITION, adapter.getPositionForItemId(999 * DAY));
+    }
+
+    public void testMultipleSelectionFollowsItsDays() {
+        ForecastAdapter adapter = createAdapter(AbsListView.CHOICE_MODE_MULTIPLE);
+        ItemChoiceManager icm = getChoiceManager(adapter);
+        adapter.swapSnapshot(createSnapshot(1000, LONG_LIST));
+
+        for (int position = 0; position < LONG_LIST; position += 7) {
+            icm.setItemChecked(position, true);
+        }
+        // Checking twice, and unchecking, both count
+        icm.setItemChecked(0, true);
+        icm.setItemChecked(7, false);
+        int expectedChecked = (LONG_LIST + 6) / 7 - 1;
+        assertEquals(expectedChecked, icm.getCheckedItemCount());
+
+        // Five hundred days earlier are added in front
+        adapter.swapSnapshot(createSnapshot(500, LONG_LIST + 500));
+        assertEquals(expectedChecked, icm.getCheckedItemCount());
+        for (int position = 0; position < LONG_LIST; position += 7) {
+            assertEquals("Error: Wrong state for the day at " + position, position != 7,
+                    icm.isItemChecked(position + 500));
+        }
+
+        // The first thousand days are dropped, taking their checks with them
+        adapter.swapSnapshot(createSnapshot(1500, LONG_LIST));
+        int dropped = (500 + 6) / 7;
+        assertEquals(expectedChecked + 1 - dropped, icm.getCheckedItemCount());
+        for (int position = 0; position < LONG_LIST - 500; position++) {
+            assertEquals((position + 500) % 7 == 0, icm.isItemChecked(position));
+        }
+    }
+
+    public void testSingleSelectionMovesAndStays() {
+        ForecastAdapter adapter = createAdapter(AbsListView.CHOICE_MODE_SINGLE);
+        ItemChoiceManager icm = getChoiceManager(adapter);
+        adapter.swapSnapshot(createSnapshot(1000, LONG_LIST));
+
+        icm.setItemChecked(10, true);
+        icm.setItemChecked(2500, true);
+        assertEquals(1, icm.getCheckedItemCount());
+        assertEquals(2500, icm.getSelectedItemPosition());
+
+        adapter.swapSnapshot(createSnapshot(3000, LONG_LIST));
+        assertEquals(500, icm.getSelectedItemPosition());
+    }
+
+    public void testSaveAndRestore() {
+        ForecastAdapter adapter = createAdapter(AbsListView.CHOICE_MODE_MULTIPLE);
+        ItemChoiceManager icm = getChoiceManager(adapter);
+        adapter.swapSnapshot(createSnapshot(1000, 100));
+        icm.setItemChecked(3, true);
+        icm.setItemChecked(42, true);
+        icm.setItemChecked(99, true);
+
+        Bundle state = new Bundle();
+        adapter.onSaveInstanceState(state);
+
+        ForecastAdapter restored = createAdapter(AbsListView.CHOICE_MODE_MULTIPLE);
+        restored.onRestoreInstanceState(state);
+        ItemChoiceManager restoredIcm = getChoiceManager(restored);
+        assertEquals(3, restoredIcm.getCheckedItemCount());
+        assertTrue(restoredIcm.isItemChecked(42));
+
+        // Loading the list afterwards puts the checks on the same days
+        restored.swapSnapshot(createSnapshot(990, 120));
+        assertEquals(3, restoredIcm.getCheckedItemCount());
+        assertTrue(restoredIcm.isItemChecked(13));
+        assertTrue(restoredIcm.isItemChecked(52));
+        assertTrue(restoredIcm.isItemChecked(109));
+    }
+
+    /*
+        Benchmark: relocating checked days after a full reload by scanning every id, as the
+        manager does for adapters without a lookup, against asking the snapshot's index.
+     */
+    public void testRelocationBenchmark() {
+        final int iterations = 50;
+
+        TestForecastDiff.SnapshotAdapter scanning = new TestForecastDiff.SnapshotAdapter();
+        ItemChoiceManager scanningIcm = new ItemChoiceManager(scanning);
+        scanningIcm.setChoiceMode(AbsListView.CHOICE_MODE_MULTIPLE);
+        scanning.mSnapshot = createSnapshot(1000, LONG_LIST);
+
+        ForecastAdapter indexed = createAdapter(AbsListView.CHOICE_MODE_MULTIPLE);
+        ItemChoiceManager indexedIcm = getChoiceManager(indexed);
+        indexed.swapSnapshot(createSnapshot(1000, LONG_LIST));
+
+        for (int position = LONG_LIST - 50; position < LONG_LIST; position++) {
+            scanningIcm.setItemChecked(position, true);
+            indexedIcm.setItemChecked(position, true);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            scanning.notifyDataSetChanged();
+        }
+        long scanNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            indexed.notifyDataSetChanged();
+        }
+        long indexNanos = System.nanoTime() - start;
+
+        assertEquals(50, scanningIcm.getCheckedItemCount());
+        assertEquals(50, indexedIcm.getCheckedItemCount());
+        Log.i(LOG_TAG, "testRelocationBenchmark: " + scanNanos / iterations / 1000 +
+                "us per reload scanning ids, " + indexNanos / iterations / 1000 +
+                "us per reload with the index");
+    }
+
+    private static ItemChoiceManager getChoiceManager(ForecastAdapter adapter) {
+        return adapter.getChoiceManager();
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+public class TestWeatherPreferences extends AndroidTestCase {
+    public static final String LOG_TAG = TestWeatherPreferences.class.getSimpleName();
+
+    private static final int BENCHMARK_ITERATIONS = 10000;
+
+    private SharedPreferences mPrefs;
+    private String mUnitsKey;
+    private String mSavedUnits;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mPrefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        mUnitsKey = mContext.getString(R.string.pref_units_key);
+        mSavedUnits = mPrefs.getString(mUnitsKey, null);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SharedPreferences.Editor editor = mPrefs.edit();
+        if (mSavedUnits == null) {
+            editor.remove(mUnitsKey);
+        } else {
+            editor.putString(mUnitsKey, mSavedUnits);
+        }
+        editor.commit();
+        WeatherPreferences.refresh(mContext);
+        super.tearDown();
+    }
+
+    public void testSnapshotFollowsChanges() {
+        mPrefs.edit().putString(mUnitsKey, mContext.getString(R.string.pref_units_metric)).commit();
+        WeatherPreferences.refresh(mContext);
+        assertTrue(Utility.isMetric(mContext));
+        assertEquals(String.format(mContext.getString(R.string.format_temperature), 20.0),
+                Utility.formatTemperature(mContext, 20));
+
+        WeatherPreferences before = WeatherPreferences.get(mContext);
+        mPrefs.edit().putString(mUnitsKey, mContext.getString(R.string.pref_units_imperial)).commit();
+        WeatherPreferences.refresh(mContext);
+        assertFalse("Error: Snapshot did not pick up the new units", Utility.isMetric(mContext));
+        assertEquals(String.format(mContext.getString(R.string.format_temperature), 68.0),
+                Utility.formatTemperature(mContext, 20));
+
+        // The snapshot we held on to doesn't change underneath us
+        assertTrue(before.mMetric);
+    }
+
+    /*
+        Microbenchmark: formatTemperature reading preferences and resources on every call, the
+        way it used to, against reading the cached snapshot.
+     */
+    public void testFormatTemperatureBenchmark() {
+        WeatherPreferences.refresh(mContext);
+        int sink = 0;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+            double temperature = i % 40;
+            boolean metric = prefs.getString(mContext.getString(R.string.pref_units_key),
+                    mContext.getString(R.string.pref_units_metric))
+                    .equals(mContext.getString(R.string.pref_units_metric));
+            if (!metric) {
+                temperature = (temperature * 1.8) + 32;
+            }
+            sink += String.format(mContext.getString(R.string.format_temperature), temperature).length();
+        }
+        long legacyNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            sink += Utility.formatTemperature(mContext, i % 40).length();
+        }
+        long cachedNanos = System.nanoTime() - start;
+
+        Log.i(LOG_TAG, "testFormatTemperatureBenchmark: " + legacyNanos / BENCHMARK_ITERATIONS +
+                "ns per call reading preferences, " + cachedNanos / BENCHMARK_ITERATIONS +
+                "ns per call from the snapshot (" + sink + ")");
+    }
+}
@@ -91,6 +91,7 @@ public class TestDb extends AndroidTestCase {
         locationColumnHashSet.add(WeatherContract.LocationEntry.COLUMN_COORD_LAT);
         locationColumnHashSet.add(WeatherContract.LocationEntry.COLUMN_COORD_LONG);
         locationColumnHashSet.add(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING);
+        locationColumnHashSet.add(WeatherContract.LocationEntry.COLUMN_LAST_SYNCED);
 
         int columnNameIndex = c.getColumnIndex("name");
         do {
@@ -102,6 +103,11 @@ public class TestDb extends AndroidTestCase {
         // entry columns
         assertTrue("Error: The database doesn't contain all of the required location entry columns",
                 locationColumnHashSet.isEmpty());
+        c.close();
+
+        // The retention policy relies on new databases vacuuming incrementally
+        assertEquals("Error: The database was not created with incremental auto_vacuum",
+                WeatherRetention.AUTO_VACUUM_INCREMENTAL, WeatherDbHelper.getAutoVacuum(db));
         db.close();
     }
 
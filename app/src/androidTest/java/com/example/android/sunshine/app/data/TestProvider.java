@@ -24,7 +24,9 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
 import android.os.Build;
+import android.os.Bundle;
 import android.test.AndroidTestCase;
+import android.text.format.Time;
 import android.util.Log;
 
 import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
@@ -512,4 +514,121 @@ public class TestProvider extends AndroidTestCase {
         }
         cursor.close();
     }
+
+    /*
+        This test makes sure the retention policy keeps the requested days of history and drops
+        locations that haven't been synced recently, along with their weather.
+     */
+    public void testApplyRetention() {
+        long now = System.currentTimeMillis();
+
+        ContentValues currentLocation = TestUtilities.createNorthPoleLocationValues();
+        currentLocation.put(LocationEntry.COLUMN_LAST_SYNCED, now);
+        long currentRowId = ContentUris.parseId(
+                mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, currentLocation));
+
+        ContentValues staleLocation = TestUtilities.createNorthPoleLocationValues();
+        staleLocation.put(LocationEntry.COLUMN_LOCATION_SETTING, "99705");
+        staleLocation.put(LocationEntry.COLUMN_LAST_SYNCED, 0);
+        long staleRowId = ContentUris.parseId(
+                mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, staleLocation));
+
+        // Three days of history and seven days of forecast for each location, stored the same
+        // way the sync stores them
+        Time dayTime = new Time();
+        dayTime.setToNow();
+        int julianToday = Time.getJulianDay(now, dayTime.gmtoff);
+        ContentValues[] weather = new ContentValues[20];
+        for (int i = 0; i < 10; i++) {
+            long date = dayTime.setJulianDay(julianToday - 3 + i);
+            weather[i] = TestUtilities.createWeatherValues(currentRowId);
+            weather[i].put(WeatherEntry.COLUMN_DATE, date);
+            weather[i + 10] = TestUtilities.createWeatherValues(staleRowId);
+            weather[i + 10].put(WeatherEntry.COLUMN_DATE, date);
+        }
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, weather);
+
+        WeatherRetention retention = new WeatherRetention(1,
+                WeatherRetention.DEFAULT_STALE_LOCATION_DAYS,
+                WeatherRetention.DEFAULT_VACUUM_BUDGET_BYTES);
+        Bundle result = mContext.getContentResolver().call(WeatherContract.BASE_CONTENT_URI,
+                WeatherContract.METHOD_APPLY_RETENTION, null, retention.toBundle());
+
+        assertNotNull("Error: Provider did not handle the retention call", result);
+        assertEquals("Error: Unexpected number of forecasts removed",
+                2 + 10, result.getInt(WeatherRetention.RESULT_WEATHER_DELETED));
+        assertEquals("Error: Stale location was not removed",
+                1, result.getInt(WeatherRetention.RESULT_LOCATIONS_DELETED));
+        assertTrue(result.getLong(WeatherRetention.RESULT_BYTES_RECLAIMED) >= 0);
+
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherEntry.CONTENT_URI,
+                null,
+                null,
+                null,
+                WeatherEntry.COLUMN_DATE + " ASC"
+        );
+        assertEquals("Error: Retention kept the wrong number of forecasts", 8, cursor.getCount());
+        cursor.moveToFirst();
+        assertEquals("Error: Retention did not keep yesterday's forecast",
+                dayTime.setJulianDay(julianToday - 1),
+                cursor.getLong(cursor.getColumnIndex(WeatherEntry.COLUMN_DATE)));
+        cursor.close();
+    }
+
+    static private final int WRITE_BENCHMARK_RECORDS = 200;
+
+    /*
+        Benchmark for the batching path: the same location writes go in once as single inserts,
+        each with its own transaction and notification, and once through the WeatherWriteQueue.
+     */
+    public void testWriteQueueThroughput() {
+        long start = System.nanoTime();
+        for (int i = 0; i < WRITE_BENCHMARK_RECORDS; i++) {
+            ContentValues values = TestUtilities.createNorthPoleLocationValues();
+            values.put(LocationEntry.COLUMN_LOCATION_SETTING, "single" + i);
+            mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, values);
+        }
+        long singleNanos = System.nanoTime() - start;
+
+        // Long enough a window that the whole run ends up in one batch
+        WeatherWriteQueue queue = new WeatherWriteQueue(mContext, 60 * 1000);
+        TestUtilities.TestContentObserver locationObserver = TestUtilities.getTestContentObserver();
+        mContext.getContentResolver().registerContentObserver(LocationEntry.CONTENT_URI, true, locationObserver);
+
+        int applied;
+        long queuedNanos;
+        try {
+            start = System.nanoTime();
+            for (int i = 0; i < WRITE_BENCHMARK_RECORDS; i++) {
+                ContentValues values = TestUtilities.createNorthPoleLocationValues();
+                values.put(LocationEntry.COLUMN_LOCATION_SETTING, "queued" + i);
+                queue.insert(LocationEntry.CONTENT_URI, values);
+            }
+            applied = queue.flush();
+            queuedNanos = System.nanoTime() - start;
+
+            locationObserver.waitForNotificationOrFail();
+        } finally {
+            mContext.getContentResolver().unregisterContentObserver(locationObserver);
+            // Don't leave the queue's thread running in the test process
+            queue.quit();
+        }
+
+        assertEquals("Error: Write queue did not apply every queued insert",
+                WRITE_BENCHMARK_RECORDS, applied);
+        Cursor cursor = mContext.getContentResolver().query(
+                LocationEntry.CONTENT_URI,
+                null,
+                null,
+                null,
+                null
+        );
+        assertEquals(2 * WRITE_BENCHMARK_RECORDS, cursor.getCount());
+        cursor.close();
+
+        Log.i(LOG_TAG, "testWriteQueueThroughput: " + WRITE_BENCHMARK_RECORDS + " inserts took " +
+                singleNanos / 1000000 + "ms one at a time, " + queuedNanos / 1000000 +
+                "ms through the write queue");
+    }
 }
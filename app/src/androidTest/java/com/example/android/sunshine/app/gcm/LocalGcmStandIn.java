@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.gcm;
+
+import android.content.Context;
+import android.os.Bundle;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/*
+    Stands in for our server and GCM: builds forecast delta messages the way they arrive at
+    MyGcmListenerService, with every data field as a String extra, and hands them to the same
+    code the listener runs, either as sent to this device or to a location's topic.
+ */
+public class LocalGcmStandIn {
+    private final JSONArray mDays = new JSONArray();
+
+    public LocalGcmStandIn addDay(int day, int weatherId, String description, double high,
+                                  double low) throws JSONException {
+        mDays.put(new JSONObject()
+                .put(ForecastDelta.JSON_DAY, day)
+                .put(ForecastDelta.JSON_WEATHER_ID, weatherId)
+                .put(ForecastDelta.JSON_DESCRIPTION, description)
+                .put(ForecastDelta.JSON_MAX, high)
+                .put(ForecastDelta.JSON_MIN, low));
+        return this;
+    }
+
+    public LocalGcmStandIn addTemperatures(int day, double high, double low) throws JSONException {
+        mDays.put(new JSONObject()
+                .put(ForecastDelta.JSON_DAY, day)
+                .put(ForecastDelta.JSON_MAX, high)
+                .put(ForecastDelta.JSON_MIN, low));
+        return this;
+    }
+
+    public Bundle buildMessage(String locationSetting) throws JSONException {
+        JSONObject forecast = new JSONObject()
+                .put(ForecastDelta.JSON_LOCATION, locationSetting)
+                .put(ForecastDelta.JSON_DAYS, mDays);
+        Bundle data = new Bundle();
+        data.putString(MyGcmListenerService.EXTRA_FORECAST, forecast.toString());
+        return data;
+    }
+
+    /**
+     * @return whether the listener applied the whole delta
+     */
+    public boolean send(Context context, String locationSetting) throws JSONException {
+        return MyGcmListenerService.onForecastMessage(context, buildMessage(locationSetting));
+    }
+
+    /**
+     * Sends the delta to the topic of the location it's for.
+     */
+    public boolean sendToTopic(Context context, String locationSetting) throws JSONException {
+        return sendToTopic(context, LocationTopics.getTopic(locationSetting), locationSetting);
+    }
+
+    /**
+     * Sends the delta for a location to any topic, as a misbehaving server might.
+     */
+    public boolean sendToTopic(Context context, String topic, String locationSetting)
+            throws JSONException {
+        return MyGcmListenerService.onForecastMessage(context, topic, buildMessage(locationSetting));
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.gcm;
+
+import android.app.Notification;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.support.v4.app.NotificationCompat;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.R;
+
+import java.util.HashMap;
+
+/*
+    Drives a storm's worth of alerts for two locations through the notifier, and checks that
+    each location keeps one notification, the first alerts go out straight away, and the held
+    back ones are merged into an inbox with a "+N more" summary, even by a new process.
+ */
+public class TestAlertNotifier extends AndroidTestCase {
+
+    private static final String STORM_LOCATION = "99705";
+    private static final String FLOOD_LOCATION = "94043";
+    private static final int STORM_ALERTS = 8;
+
+    // The notifications posted, by location
+    private final HashMap<String, Notification> mPosted = new HashMap<String, Notification>();
+    // The delay of the last flush scheduled, or -1
+    private long mFlushDelay;
+    private SharedPreferences mPrefs;
+    private AlertNotifier mNotifier;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mPosted.clear();
+        mFlushDelay = -1;
+        // Kept apart from the app's own alerts
+        mPrefs = getContext().getSharedPreferences("test_" + AlertNotifier.PREFS_NAME,
+                Context.MODE_PRIVATE);
+        mPrefs.edit().clear().commit();
+        mNotifier = createNotifier();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mPrefs.edit().clear().commit();
+        super.tearDown();
+    }
+
+    private AlertNotifier createNotifier() {
+        return new AlertNotifier(getContext(),
+                new TokenBucket(AlertNotifier.BURST_UPDATES, AlertNotifier.REFILL_MS), mPrefs) {
+            @Override
+            void postNotification(String location, Notification notification) {
+                mPosted.put(location, notification);
+            }
+
+            @Override
+            void scheduleFlush(long delayMillis) {
+                mFlushDelay = delayMillis;
+            }
+        };
+    }
+
+    public void testAlertsMergePerLocation() {
+        long now = 5000;
+        mNotifier.onAlert(STORM_LOCATION, "Storm 1", now);
+        mNotifier.onAlert(FLOOD_LOCATION, "Flood 1", now);
+
+        // The burst lets both first alerts out at once
+        assertEquals(2, mNotifier.getPostedCount());
+        assertEquals(2, mPosted.size());
+        assertEquals("Flood 1", getExtras(FLOOD_LOCATION).getCharSequence(
+                NotificationCompat.EXTRA_TEXT).toString());
+
+        for (int i = 2; i <= STORM_ALERTS; i++) {
+            mNotifier.onAlert(STORM_LOCATION, "Storm " + i, now);
+        }
+        // The rest are held back for the next update the bucket allows
+        assertEquals(AlertNotifier.REFILL_MS, mFlushDelay);
+        assertEquals(STORM_ALERTS + 1, mNotifier.getReceivedCount());
+        assertEquals(2, mNotifier.getPostedCount());
+        assertEquals("Storm 1", getExtras(STORM_LOCATION).getCharSequence(
+                NotificationCompat.EXTRA_TEXT).toString());
+
+        mNotifier.flush(now + AlertNotifier.REFILL_MS);
+        assertEquals(3, mNotifier.getPostedCount());
+        assertEquals(2, mPosted.size());
+        checkStormInbox();
+
+        // The other location's notification was left alone
+        assertEquals("Flood 1", getExtras(FLOOD_LOCATION).getCharSequence(
+                NotificationCompat.EXTRA_TEXT).toString());
+    }
+
+    public void testHeldBackAlertsOutliveProcess() {
+        long now = SystemClock.elapsedRealtime();
+        for (int i = 1; i <= STORM_ALERTS; i++) {
+            mNotifier.onAlert(STORM_LOCATION, "Storm " + i, now);
+        }
+        assertEquals(AlertNotifier.BURST_UPDATES, mNotifier.getPostedCount());
+
+        // A new process picks up the held back alerts when the alarm goes off
+        mPosted.clear();
+        AlertNotifier restarted = createNotifier();
+        restarted.flush(now + AlertNotifier.REFILL_MS);
+        assertEquals(1, restarted.getPostedCount());
+        checkStormInbox();
+    }
+
+    private void checkStormInbox() {
+        Notification storm = mPosted.get(STORM_LOCATION);
+        assertEquals(STORM_ALERTS, storm.number);
+        Bundle extras = getExtras(STORM_LOCATION);
+        CharSequence[] lines = extras.getCharSequenceArray(NotificationCompat.EXTRA_TEXT_LINES);
+        assertNotNull("Merged alerts should use an inbox", lines);
+        assertEquals(AlertNotifier.INBOX_LINES, lines.length);
+        // Newest first
+        for (int i = 0; i < lines.length; i++) {
+            assertEquals("Storm " + (STORM_ALERTS - i), lines[i].toString());
+        }
+        assertEquals(getContext().getString(R.string.gcm_weather_alerts_more,
+                        STORM_ALERTS - AlertNotifier.INBOX_LINES),
+                extras.getCharSequence(NotificationCompat.EXTRA_SUMMARY_TEXT).toString());
+    }
+
+    private Bundle getExtras(String location) {
+        Notification notification = mPosted.get(location);
+        assertNotNull("No notification for " + location, notification);
+        return NotificationCompat.getExtras(notification);
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.gcm;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.os.Bundle;
+import android.test.AndroidTestCase;
+import android.text.format.Time;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+import org.json.JSONException;
+
+/*
+    Sends forecast deltas through LocalGcmStandIn and checks what ends up in the database.
+    Uses a location that isn't the preferred one, so no sync is started.
+ */
+public class TestForecastDelta extends AndroidTestCase {
+
+    private static final String TEST_LOCATION = "99705";
+    private static final int DAYS = 3;
+
+    private long[] mDates;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        deleteAllRecords();
+
+        ContentValues location = new ContentValues();
+        location.put(LocationEntry.COLUMN_LOCATION_SETTING, TEST_LOCATION);
+        location.put(LocationEntry.COLUMN_CITY_NAME, "North Pole");
+        location.put(LocationEntry.COLUMN_COORD_LAT, 64.7488);
+        location.put(LocationEntry.COLUMN_COORD_LONG, -147.353);
+        long locationId = ContentUris.parseId(
+                mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, location));
+
+        // Dated the way the sync dates them
+        Time dayTime = new Time();
+        dayTime.setToNow();
+        int julianStartDay = Time.getJulianDay(System.currentTimeMillis(), dayTime.gmtoff);
+        dayTime = new Time();
+
+        mDates = new long[DAYS];
+        ContentValues[] weather = new ContentValues[DAYS];
+        for (int i = 0; i < DAYS; i++) {
+            mDates[i] = WeatherContract.normalizeDate(dayTime.setJulianDay(julianStartDay + i));
+            weather[i] = new ContentValues();
+            weather[i].put(WeatherEntry.COLUMN_LOC_KEY, locationId);
+            weather[i].put(WeatherEntry.COLUMN_DATE, mDates[i]);
+            weather[i].put(WeatherEntry.COLUMN_WEATHER_ID, 800);
+            weather[i].put(WeatherEntry.COLUMN_SHORT_DESC, "Clear");
+            weather[i].put(WeatherEntry.COLUMN_MAX_TEMP, 20.0);
+            weather[i].put(WeatherEntry.COLUMN_MIN_TEMP, 10.0);
+            weather[i].put(WeatherEntry.COLUMN_HUMIDITY, 50.0);
+            weather[i].put(WeatherEntry.COLUMN_PRESSURE, 1013.0);
+            weather[i].put(WeatherEntry.COLUMN_WIND_SPEED, 3.0);
+            weather[i].put(WeatherEntry.COLUMN_DEGREES, 90.0);
+        }
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, weather);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteAllRecords();
+        super.tearDown();
+    }
+
+    private void deleteAllRecords() {
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+    }
+
+    public void testDeltaChangesOnlyItsDays() throws JSONException {
+        assertTrue(new LocalGcmStandIn()
+                .addDay(1, 501, "Rain", 12.5, 7.25)
+                .addTemperatures(2, 18.0, 9.0)
+                .send(mContext, TEST_LOCATION));
+
+        assertDay(0, 800, "Clear", 20.0, 10.0);
+        assertDay(1, 501, "Rain", 12.5, 7.25);
+        assertDay(2, 800, "Clear", 18.0, 9.0);
+    }
+
+    public void testDeltaLeavesOtherColumnsAlone() throws JSONException {
+        new LocalGcmStandIn().addDay(0, 501, "Rain", 12.5, 7.25).send(mContext, TEST_LOCATION);
+
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherEntry.buildWeatherLocationWithDate(TEST_LOCATION, mDates[0]),
+                new String[]{WeatherEntry.COLUMN_HUMIDITY, WeatherEntry.COLUMN_PRESSURE},
+                null, null, null);
+        assertTrue(cursor.moveToFirst());
+        assertEquals(50.0, cursor.getDouble(0));
+        assertEquals(1013.0, cursor.getDouble(1));
+        cursor.close();
+    }
+
+    public void testMissingDayIsIncomplete() throws JSONException {
+        // The days we have are still updated, but a full sync is needed for the rest
+        assertFalse(new LocalGcmStandIn()
+                .addTemperatures(1, 15.0, 5.0)
+                .addTemperatures(DAYS + 1, 15.0, 5.0)
+                .send(mContext, TEST_LOCATION));
+        assertDay(1, 800, "Clear", 15.0, 5.0);
+    }
+
+    public void testUnknownLocationIsIncomplete() throws JSONException {
+        assertFalse(new LocalGcmStandIn()
+                .addTemperatures(0, 15.0, 5.0)
+                .send(mContext, "nowhere"));
+        assertDay(0, 800, "Clear", 20.0, 10.0);
+    }
+
+    public void testTopicMessage() throws JSONException {
+        assertTrue(new LocalGcmStandIn()
+                .addDay(1, 501, "Rain", 12.5, 7.25)
+                .sendToTopic(mContext, TEST_LOCATION));
+        assertDay(1, 501, "Rain", 12.5, 7.25);
+    }
+
+    public void testTopicMessageForAnotherLocationIsIgnored() throws JSONException {
+        assertFalse(new LocalGcmStandIn()
+                .addDay(1, 501, "Rain", 12.5, 7.25)
+                .sendToTopic(mContext, LocationTopics.getTopic("94043"), TEST_LOCATION));
+        assertDay(1, 800, "Clear", 20.0, 10.0);
+    }
+
+    public void testInvalidMessagesAreIgnored() throws JSONException {
+        Bundle data = new Bundle();
+        data.putString(MyGcmListenerService.EXTRA_FORECAST, "{\"location\": \"" + TEST_LOCATION + "\"}");
+        assertFalse(MyGcmListenerService.onForecastMessage(mContext, data));
+
+        // A day that says nothing changed
+        data.putString(MyGcmListenerService.EXTRA_FORECAST, "{\"location\": \"" + TEST_LOCATION +
+                "\", \"days\": [{\"day\": 0}]}");
+        assertFalse(MyGcmListenerService.onForecastMessage(mContext, data));
+
+        assertFalse(new LocalGcmStandIn()
+                .addTemperatures(ForecastDelta.MAX_DAYS, 15.0, 5.0)
+                .send(mContext, TEST_LOCATION));
+        assertDay(0, 800, "Clear", 20.0, 10.0);
+    }
+
+    private void assertDay(int day, int weatherId, String description, double high, double low) {
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherEntry.buildWeatherLocationWithDate(TEST_LOCATION, mDates[day]),
+                new String[]{WeatherEntry.COLUMN_WEATHER_ID, WeatherEntry.COLUMN_SHORT_DESC,
+                        WeatherEntry.COLUMN_MAX_TEMP, WeatherEntry.COLUMN_MIN_TEMP},
+                null, null, null);
+        assertTrue("No weather for day " + day, cursor.moveToFirst());
+        assertEquals(weatherId, cursor.getInt(0));
+        assertEquals(description, cursor.getString(1));
+        assertEquals(high, cursor.getDouble(2));
+        assertEquals(low, cursor.getDouble(3));
+        cursor.close();
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.gcm;
+
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.test.AndroidTestCase;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/*
+    Checks the topic names our server and this device have to agree on, and what counts as a
+    live push channel.
+ */
+public class TestLocationTopics extends AndroidTestCase {
+
+    // What GCM allows in a topic name
+    private static final String TOPIC_PATTERN = "/topics/[a-zA-Z0-9-_.~%]{1,900}";
+
+    private Set<String> mSavedTopics;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mSavedTopics = LocationTopics.getSubscribedTopics(mContext);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        PreferenceManager.getDefaultSharedPreferences(mContext).edit()
+                .putStringSet(LocationTopics.PREF_SUBSCRIBED_TOPICS, mSavedTopics)
+                .commit();
+        super.tearDown();
+    }
+
+    public void testTopicNames() {
+        assertEquals("/topics/weather-94043", LocationTopics.getTopic("94043"));
+        assertEquals("/topics/weather-Mountain%20View%2C%20CA",
+                LocationTopics.getTopic("Mountain View, CA"));
+        assertEquals("/topics/weather-Z%C3%BCrich", LocationTopics.getTopic("Zürich"));
+
+        String[] locations = {"94043", "Mountain View, CA", "Zürich", "São Paulo",
+                "東京", "a/b?c=d&e#f"};
+        for (String location : locations) {
+            String topic = LocationTopics.getTopic(location);
+            assertTrue(topic, topic.matches(TOPIC_PATTERN));
+        }
+    }
+
+    public void testDistinctLocationsGetDistinctTopics() {
+        assertFalse(LocationTopics.getTopic("a b").equals(LocationTopics.getTopic("a_b")));
+        assertFalse(LocationTopics.getTopic("a%20b").equals(LocationTopics.getTopic("a b")));
+    }
+
+    public void testLiveChannel() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        prefs.edit().putStringSet(LocationTopics.PREF_SUBSCRIBED_TOPICS, new HashSet<String>(
+                Arrays.asList(LocationTopics.getTopic("94043")))).commit();
+        assertTrue(LocationTopics.hasLiveChannel(mContext, "94043"));
+        assertFalse(LocationTopics.hasLiveChannel(mContext, "99705"));
+
+        prefs.edit().remove(LocationTopics.PREF_SUBSCRIBED_TOPICS).commit();
+        assertFalse(LocationTopics.hasLiveChannel(mContext, "94043"));
+    }
+}
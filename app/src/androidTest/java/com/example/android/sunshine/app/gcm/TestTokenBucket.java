@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.gcm;
+
+import android.test.AndroidTestCase;
+
+/*
+    Checks that the bucket limiting alert notifications allows its burst, then refills at its
+    rate and no faster.
+ */
+public class TestTokenBucket extends AndroidTestCase {
+
+    private static final long REFILL_MS = 1000;
+
+    public void testBurstThenRefill() {
+        TokenBucket bucket = new TokenBucket(2, REFILL_MS);
+        long now = 5000;
+        assertTrue(bucket.tryAcquire(now));
+        assertTrue(bucket.tryAcquire(now));
+        assertFalse(bucket.tryAcquire(now));
+        assertEquals(REFILL_MS, bucket.getDelayMillis(now));
+
+        now += REFILL_MS - 1;
+        assertEquals(1, bucket.getDelayMillis(now));
+        assertFalse(bucket.tryAcquire(now));
+
+        now += 1;
+        assertEquals(0, bucket.getDelayMillis(now));
+        assertTrue(bucket.tryAcquire(now));
+        assertFalse(bucket.tryAcquire(now));
+    }
+
+    public void testRefillStopsAtCapacity() {
+        TokenBucket bucket = new TokenBucket(2, REFILL_MS);
+        long now = 5000;
+        assertTrue(bucket.tryAcquire(now));
+
+        // A long quiet spell only fills the bucket back up
+        now += 100 * REFILL_MS;
+        assertTrue(bucket.tryAcquire(now));
+        assertTrue(bucket.tryAcquire(now));
+        assertFalse(bucket.tryAcquire(now));
+    }
+
+    public void testStormIsRateLimited() {
+        TokenBucket bucket = new TokenBucket(AlertNotifier.BURST_UPDATES, AlertNotifier.REFILL_MS);
+        // An alert every second for ten minutes
+        int allowed = 0;
+        for (long now = 0; now < 10 * 60 * 1000; now += 1000) {
+            if (bucket.tryAcquire(now)) {
+                allowed++;
+            }
+        }
+        assertEquals(AlertNotifier.BURST_UPDATES + 10 * 60 * 1000 / AlertNotifier.REFILL_MS - 1,
+                allowed);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.perf;
+
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestDetailLatencyTimer extends AndroidTestCase {
+
+    private final List<Long> mTimedDates = new ArrayList<Long>();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        DetailLatencyTimer.setListener(new DetailLatencyTimer.Listener() {
+            @Override
+            public void onDetailDrawn(long date, long latencyMillis) {
+                assertTrue(latencyMillis >= 0);
+                mTimedDates.add(date);
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        DetailLatencyTimer.setListener(null);
+        super.tearDown();
+    }
+
+    public void testOnlyTheTappedDayIsTimed() {
+        DetailLatencyTimer.onDaySelected(2000);
+        DetailLatencyTimer.onDetailDrawn(1000);
+        assertTrue("Error: Another day was timed", mTimedDates.isEmpty());
+
+        DetailLatencyTimer.onDetailDrawn(2000);
+        assertEquals(1, mTimedDates.size());
+        assertEquals(2000L, (long) mTimedDates.get(0));
+        assertTrue(DetailLatencyTimer.getLastLatencyMillis() >= 0);
+
+        // Drawing the same day again, say after a reload, isn't another tap
+        DetailLatencyTimer.onDetailDrawn(2000);
+        assertEquals(1, mTimedDates.size());
+    }
+
+    public void testLaterTapReplacesEarlierOne() {
+        DetailLatencyTimer.onDaySelected(1000);
+        DetailLatencyTimer.onDaySelected(3000);
+        DetailLatencyTimer.onDetailDrawn(1000);
+        DetailLatencyTimer.onDetailDrawn(3000);
+        assertEquals(1, mTimedDates.size());
+        assertEquals(3000L, (long) mTimedDates.get(0));
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.perf;
+
+import android.test.AndroidTestCase;
+
+public class TestFrameHistogram extends AndroidTestCase {
+
+    private static final long MS = 1000000L;
+
+    public void testBucketsAndPercentiles() {
+        FrameHistogram histogram = new FrameHistogram();
+        // 90 smooth frames, 9 that missed a vsync and one long stall
+        for (int i = 0; i < 90; i++) {
+            histogram.record(16 * MS);
+        }
+        for (int i = 0; i < 9; i++) {
+            histogram.record(33 * MS);
+        }
+        histogram.record(400 * MS);
+
+        assertEquals(100, histogram.getFrameCount());
+        assertEquals(10, histogram.getJankyFrameCount());
+        assertEquals(90, histogram.getBucketCount(2));
+        assertEquals(9, histogram.getBucketCount(5));
+        assertEquals(1, histogram.getBucketCount(FrameHistogram.BUCKET_BOUNDS_MS.length));
+
+        assertEquals(16, histogram.getPercentileMillis(50));
+        assertEquals(16, histogram.getPercentileMillis(90));
+        assertEquals(33, histogram.getPercentileMillis(99));
+        assertEquals(-1, histogram.getPercentileMillis(100));
+    }
+
+    public void testSlowBindsAreReported() {
+        FrameMonitor.reset();
+        FrameMonitor.onBind(FrameMonitor.SCREEN_FORECAST, "future day", MS);
+        assertFalse("Error: Fast bind was reported", FrameMonitor.dump().contains("slow binds"));
+
+        FrameMonitor.onBind(FrameMonitor.SCREEN_FORECAST, "future day", 6 * MS);
+        FrameMonitor.onBind(FrameMonitor.SCREEN_FORECAST, "future day", 9 * MS);
+        assertTrue(FrameMonitor.dump().contains("slow binds, forecast future day: 2, worst 9.0ms"));
+        FrameMonitor.reset();
+    }
+}
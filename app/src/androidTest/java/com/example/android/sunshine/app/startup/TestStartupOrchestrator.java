@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.startup;
+
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class TestStartupOrchestrator extends AndroidTestCase {
+
+    private final List<String> mOrder = Collections.synchronizedList(new ArrayList<String>());
+
+    private Runnable record(final String name, final boolean onMainThread, final CountDownLatch done) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                // Failing here would take down the process, so a wrong thread shows up in the order
+                boolean mainThread = Looper.myLooper() == Looper.getMainLooper();
+                mOrder.add(mainThread == onMainThread ? name : name + " on the wrong thread");
+                done.countDown();
+            }
+        };
+    }
+
+    // The orchestrator is driven from the main thread
+    private void startOnMainThread(final StartupOrchestrator orchestrator) {
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                orchestrator.start();
+            }
+        });
+    }
+
+    public void testStepsRunAfterTheirDependencies() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(4);
+        final StartupOrchestrator orchestrator = new StartupOrchestrator(AsyncTask.THREAD_POOL_EXECUTOR)
+                .addStep("d", StartupOrchestrator.THREAD_MAIN,
+                        record("d", true, done), "b", "c")
+                .addStep("b", StartupOrchestrator.THREAD_BACKGROUND,
+                        record("b", false, done), "a")
+                .addStep("a", StartupOrchestrator.THREAD_MAIN, record("a", true, done))
+                .addStep("c", StartupOrchestrator.THREAD_BACKGROUND,
+                        record("c", false, done), "a");
+        startOnMainThread(orchestrator);
+
+        assertTrue("Error: Steps didn't all run", done.await(5, TimeUnit.SECONDS));
+        assertEquals(4, mOrder.size());
+        assertEquals("a", mOrder.get(0));
+        assertTrue(mOrder.contains("b"));
+        assertTrue(mOrder.contains("c"));
+        assertEquals("d", mOrder.get(3));
+    }
+
+    public void testCancelDropsPendingSteps() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        final StartupOrchestrator orchestrator = new StartupOrchestrator()
+                .addStep("a", StartupOrchestrator.THREAD_MAIN, record("a", true, done));
+        orchestrator.cancel();
+        startOnMainThread(orchestrator);
+
+        assertFalse("Error: Cancelled step ran", done.await(500, TimeUnit.MILLISECONDS));
+        assertTrue(mOrder.isEmpty());
+    }
+
+    public void testUnknownDependency() {
+        StartupOrchestrator orchestrator = new StartupOrchestrator()
+                .addStep("a", StartupOrchestrator.THREAD_MAIN, record("a", true, new CountDownLatch(1)),
+                        "missing");
+        try {
+            orchestrator.start();
+            fail("Error: Unknown dependency was accepted");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testDependencyCycle() {
+        CountDownLatch done = new CountDownLatch(3);
+        StartupOrchestrator orchestrator = new StartupOrchestrator()
+                .addStep("a", StartupOrchestrator.THREAD_MAIN, record("a", true, done), "c")
+                .addStep("b", StartupOrchestrator.THREAD_MAIN, record("b", true, done), "a")
+                .addStep("c", StartupOrchestrator.THREAD_MAIN, record("c", true, done), "b");
+        try {
+            orchestrator.start();
+            fail("Error: Dependency cycle was accepted");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
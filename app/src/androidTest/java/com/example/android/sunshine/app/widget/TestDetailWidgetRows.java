@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.widget;
+
+import android.database.MatrixCursor;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.data.WeatherContract;
+
+/*
+    Checks that the rows copied for the detail widget match what the widget used to format
+    from its cursor for each row.
+ */
+public class TestDetailWidgetRows extends AndroidTestCase {
+
+    private static final long DAY = 1000 * 60 * 60 * 24;
+    private static final int ROWS = 14;
+
+    // In the order of the widget's projection
+    private static final String[] COLUMNS = {"_id", "date", "weather_id", "short_desc", "max", "min"};
+
+    public void testRowsMatchCursor() {
+        MatrixCursor cursor = new MatrixCursor(COLUMNS);
+        long today = System.currentTimeMillis();
+        for (int i = 0; i < ROWS; i++) {
+            cursor.addRow(new Object[]{100 + i, today + i * DAY, 800, "Clear " + i, 20.5 + i, 10.25 - i});
+        }
+
+        DetailWidgetRows rows = DetailWidgetRows.fromCursor(mContext, cursor, "99705");
+        assertEquals(ROWS, rows.size());
+        cursor.moveToPosition(-1);
+        for (int i = 0; cursor.moveToNext(); i++) {
+            long date = cursor.getLong(DetailWidgetRemoteViewsService.INDEX_WEATHER_DATE);
+            assertEquals(100 + i, rows.mIds[i]);
+            assertEquals(800, rows.mWeatherIds[i]);
+            assertEquals("Clear " + i, rows.mDescriptions[i]);
+            assertEquals(Utility.getFriendlyDayString(mContext, date, false), rows.mDateTexts[i]);
+            assertEquals(Utility.formatTemperature(mContext, 20.5 + i), rows.mHighTexts[i]);
+            assertEquals(Utility.formatTemperature(mContext, 10.25 - i), rows.mLowTexts[i]);
+            assertEquals(WeatherContract.WeatherEntry.buildWeatherLocationWithDate("99705", date),
+                    rows.mUris[i]);
+        }
+        cursor.close();
+
+        assertEquals(0, DetailWidgetRows.fromCursor(mContext, null, "99705").size());
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.widget;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.test.AndroidTestCase;
+
+public class TestWidgetUpdateScheduler extends AndroidTestCase {
+
+    public void testBurstIsOnePass() throws InterruptedException {
+        final int requested = WidgetUpdateScheduler.getRequestedCount();
+        final int coalesced = WidgetUpdateScheduler.getCoalescedCount();
+        final int passes = WidgetUpdateScheduler.getPassCount();
+
+        // What a sync followed by a resize looks like; requests are made on the main thread
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                WidgetUpdateScheduler.requestUpdate(mContext,
+                        WidgetUpdateScheduler.WIDGET_TODAY, false, null);
+                WidgetUpdateScheduler.requestUpdate(mContext,
+                        WidgetUpdateScheduler.WIDGET_DETAIL, false, null);
+                WidgetUpdateScheduler.requestUpdate(mContext,
+                        WidgetUpdateScheduler.WIDGET_TODAY, true, null);
+            }
+        });
+        Thread.sleep(WidgetUpdateScheduler.WINDOW_MS * 3);
+
+        assertEquals(requested + 3, WidgetUpdateScheduler.getRequestedCount());
+        assertEquals(coalesced + 2, WidgetUpdateScheduler.getCoalescedCount());
+        assertEquals("Error: Burst of requests wasn't merged into one pass",
+                passes + 1, WidgetUpdateScheduler.getPassCount());
+    }
+}
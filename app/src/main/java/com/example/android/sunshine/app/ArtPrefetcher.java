@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.util.Log;
+
+import com.bumptech.glide.DrawableRequestBuilder;
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.request.animation.GlideAnimation;
+import com.bumptech.glide.request.target.SimpleTarget;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Loads art pack images through Glide with one cache policy, and downloads them ahead of time.
+ *
+ * Art is cached on disk both as downloaded and as resized, so the list, the detail view and the
+ * prefetches share a single download of each image whatever size they show it at.  Requests
+ * have to be started from the main thread.
+ */
+public class ArtPrefetcher {
+    public static final String LOG_TAG = ArtPrefetcher.class.getSimpleName();
+
+    // URLs we have already asked Glide to download in this process
+    private static final Set<String> sDownloaded = new HashSet<>();
+
+    /**
+     * Starts building a load of art pack art.  Every view showing art should go through here so
+     * that their requests hit the same cache entries as the prefetches.
+     */
+    public static DrawableRequestBuilder<String> load(RequestManager glide, String artUrl,
+                                                      int errorResource) {
+        return glide.load(artUrl)
+                .diskCacheStrategy(DiskCacheStrategy.ALL)
+                .fitCenter()
+                .error(errorResource);
+    }
+
+    /**
+     * Downloads every image of an art pack into the disk cache, so switching to it doesn't
+     * send each row of the list to the network at once.
+     *
+     * @param artPack one of the pref_art_pack_* URL formats
+     */
+    public static void prefetchArtPack(Context context, String artPack) {
+        RequestManager glide = Glide.with(context.getApplicationContext());
+        for (String artUrl : WeatherCondition.getAllArtUrls(artPack)) {
+            download(glide, artUrl);
+        }
+    }
+
+    /**
+     * Downloads every image the snapshot shows into the disk cache.
+     */
+    public static void prefetch(Context context, ForecastSnapshot snapshot) {
+        RequestManager glide = Glide.with(context.getApplicationContext());
+        for (ForecastItem item : snapshot.getItems()) {
+            if (null != item.mArtUrl) {
+                download(glide, item.mArtUrl);
+            }
+        }
+    }
+
+    private static void download(RequestManager glide, final String artUrl) {
+        synchronized (sDownloaded) {
+            if (!sDownloaded.add(artUrl)) {
+                return;
+            }
+        }
+        glide.load(artUrl).downloadOnly(new SimpleTarget<File>() {
+            @Override
+            public void onResourceReady(File resource, GlideAnimation<? super File> glideAnimation) {
+            }
+
+            @Override
+            public void onLoadFailed(Exception e, Drawable errorDrawable) {
+                Log.w(LOG_TAG, "Error prefetching " + artUrl, e);
+                // Let the next prefetch try again
+                synchronized (sDownloaded) {
+                    sDownloaded.remove(artUrl);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+
+import java.text.DateFormatSymbols;
+import java.text.NumberFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Builds the day labels {@link Utility} shows for forecast dates.
+ *
+ * Localized day and month names are looked up once per locale, and the labels for the
+ * {@link #WINDOW_DAYS} days starting today are built once per day, so asking for the label of
+ * a forecast date is an array lookup.  The cached instance is dropped when the locale, time
+ * zone or date changes.
+ */
+public class DayLabels {
+    // Sunshine shows two weeks of forecast; keep some headroom for stale data and notifications
+    static final int WINDOW_DAYS = 30;
+
+    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+    // Julian day of 1970-01-01, same as Time.EPOCH_JULIAN_DAY
+    private static final int EPOCH_JULIAN_DAY = 2440588;
+
+    private static volatile DayLabels sInstance;
+    private static BroadcastReceiver sInvalidationReceiver;
+
+    private final Locale mLocale;
+    private final TimeZone mTimeZone;
+
+    private final String mToday;
+    private final String mTomorrow;
+    private final String mFullFriendlyFormat;
+    // Indexed by Calendar.SUNDAY..Calendar.SATURDAY and Calendar.JANUARY..Calendar.DECEMBER
+    private final String[] mWeekdays;
+    private final String[] mShortWeekdays;
+    private final String[] mMonths;
+    private final String[] mShortMonths;
+    // Two digit days of the month, in the locale's digits, indexed 1..31
+    private final String[] mDaysOfMonth = new String[32];
+
+    private volatile Window mWindow;
+
+    /**
+     * Labels for a run of days starting at {@link #mFirstJulianDay}.  Never changes once built.
+     */
+    private class Window {
+        final int mFirstJulianDay;
+        final String[] mDayNames = new String[WINDOW_DAYS];
+        final String[] mMonthDays = new String[WINDOW_DAYS];
+        final String[] mFriendly = new String[WINDOW_DAYS];
+        final String[] mLongFriendly = new String[WINDOW_DAYS];
+        final String[] mFullFriendly = new String[WINDOW_DAYS];
+
+        Window(int firstJulianDay) {
+            mFirstJulianDay = firstJulianDay;
+            for (int i = 0; i < WINDOW_DAYS; i++) {
+                int julianDay = firstJulianDay + i;
+                mDayNames[i] = buildDayName(julianDay, firstJulianDay);
+                mMonthDays[i] = buildMonthDay(julianDay);
+                mFullFriendly[i] = formatFullFriendly(mDayNames[i], mMonthDays[i]);
+                mFriendly[i] = buildFriendly(julianDay, firstJulianDay, false);
+                mLongFriendly[i] = (i == 0) ? mFullFriendly[i] : mFriendly[i];
+            }
+        }
+    }
+
+    DayLabels(Context context, Locale locale, TimeZone timeZone) {
+        mLocale = locale;
+        mTimeZone = timeZone;
+        mToday = context.getString(R.string.today);
+        mTomorrow = context.getString(R.string.tomorrow);
+        mFullFriendlyFormat = context.getString(R.string.format_full_friendly_date);
+
+        DateFormatSymbols symbols = DateFormatSymbols.getInstance(locale);
+        mWeekdays = symbols.getWeekdays();
+        mShortWeekdays = symbols.getShortWeekdays();
+        mMonths = symbols.getMonths();
+        mShortMonths = symbols.getShortMonths();
+
+        NumberFormat dayFormat = NumberFormat.getIntegerInstance(locale);
+        dayFormat.setMinimumIntegerDigits(2);
+        dayFormat.setGroupingUsed(false);
+        for (int day = 1; day < mDaysOfMonth.length; day++) {
+            mDaysOfMonth[day] = dayFormat.format(day);
+        }
+    }
+
+    /**
+     * Returns the labels for the current locale and time zone.
+     */
+    public static DayLabels getInstance(Context context) {
+        DayLabels labels = sInstance;
+        if (labels == null || !labels.mLocale.equals(Locale.getDefault())) {
+            labels = rebuild(context);
+        }
+        return labels;
+    }
+
+    private static synchronized DayLabels rebuild(Context context) {
+        Context appContext = context.getApplicationContext();
+        if (sInvalidationReceiver == null) {
+            sInvalidationReceiver = new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context context, Intent intent) {
+                    sInstance = null;
+                }
+            };
+            IntentFilter filter = new IntentFilter(Intent.ACTION_LOCALE_CHANGED);
+            filter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
+            filter.addAction(Intent.ACTION_TIME_CHANGED);
+            filter.addAction(Intent.ACTION_DATE_CHANGED);
+            appContext.registerReceiver(sInvalidationReceiver, filter);
+        }
+        DayLabels labels = new DayLabels(appContext, Locale.getDefault(), TimeZone.getDefault());
+        sInstance = labels;
+        return labels;
+    }
+
+    /**
+     * The julian day of a time in our time zone, using the offset in effect at that time.
+     */
+    int getJulianDay(long millis) {
+        return (int) ((millis + mTimeZone.getOffset(millis)) / DAY_IN_MILLIS) + EPOCH_JULIAN_DAY;
+    }
+
+    private Window getWindow(long now) {
+        int today = getJulianDay(now);
+        Window window = mWindow;
+        if (window == null || window.mFirstJulianDay != today) {
+            window = new Window(today);
+            mWindow = window;
+        }
+        return window;
+    }
+
+    /**
+     * @see Utility#getDayName(Context, long)
+     */
+    public String getDayName(long dateInMillis) {
+        return getDayName(dateInMillis, System.currentTimeMillis());
+    }
+
+    String getDayName(long dateInMillis, long now) {
+        Window window = getWindow(now);
+        int julianDay = getJulianDay(dateInMillis);
+        int index = julianDay - window.mFirstJulianDay;
+        if (index >= 0 && index < WINDOW_DAYS) {
+            return window.mDayNames[index];
+        }
+        return buildDayName(julianDay, window.mFirstJulianDay);
+    }
+
+    /**
+     * @see Utility#getFormattedMonthDay(Context, long)
+     */
+    public String getFormattedMonthDay(long dateInMillis) {
+        return getFormattedMonthDay(dateInMillis, System.currentTimeMillis());
+    }
+
+    String getFormattedMonthDay(long dateInMillis, long now) {
+        Window window = getWindow(now);
+        int julianDay = getJulianDay(dateInMillis);
+        int index = julianDay - window.mFirstJulianDay;
+        if (index >= 0 && index < WINDOW_DAYS) {
+            return window.mMonthDays[index];
+        }
+        return buildMonthDay(julianDay);
+    }
+
+    /**
+     * @see Utility#getFriendlyDayString(Context, long, boolean)
+     */
+    public String getFriendlyDayString(long dateInMillis, boolean displayLongToday) {
+        return getFriendlyDayString(dateInMillis, displayLongToday, System.currentTimeMillis());
+    }
+
+    String getFriendlyDayString(long dateInMillis, boolean displayLongToday, long now) {
+        Window window = getWindow(now);
+        int julianDay = getJulianDay(dateInMillis);
+        int index = julianDay - window.mFirstJulianDay;
+        if (index >= 0 && index < WINDOW_DAYS) {
+            return displayLongToday ? window.mLongFriendly[index] : window.mFriendly[index];
+        }
+        return buildFriendly(julianDay, window.mFirstJulianDay, displayLongToday);
+    }
+
+    /**
+     * @see Utility#getFullFriendlyDayString(Context, long)
+     */
+    public String getFullFriendlyDayString(long dateInMillis) {
+        return getFullFriendlyDayString(dateInMillis, System.currentTimeMillis());
+    }
+
+    String getFullFriendlyDayString(long dateInMillis, long now) {
+        Window window = getWindow(now);
+        int julianDay = getJulianDay(dateInMillis);
+        int index = julianDay - window.mFirstJulianDay;
+        if (index >= 0 && index < WINDOW_DAYS) {
+            return window.mFullFriendly[index];
+        }
+        return formatFullFriendly(buildDayName(julianDay, window.mFirstJulianDay),
+                buildMonthDay(julianDay));
+    }
+
+    // "Today", "Tomorrow", or the day of the week, e.g "Wednesday"
+    private String buildDayName(int julianDay, int today) {
+        if (julianDay == today) {
+            return mToday;
+        } else if (julianDay == today + 1) {
+            return mTomorrow;
+        }
+        return mWeekdays[getDayOfWeek(julianDay)];
+    }
+
+    // "June 24"
+    private String buildMonthDay(int julianDay) {
+        int monthDay = getMonthAndDay(julianDay);
+        return mMonths[monthDay >> 8] + " " + mDaysOfMonth[monthDay & 0xff];
+    }
+
+    // "Today, June 24" if asked for, the day name for the coming week, or else "Mon Jun 03"
+    private String buildFriendly(int julianDay, int today, boolean displayLongToday) {
+        if (displayLongToday && julianDay == today) {
+            return formatFullFriendly(mToday, buildMonthDay(julianDay));
+        } else if (julianDay < today + 7) {
+            return buildDayName(julianDay, today);
+        }
+        int monthDay = getMonthAndDay(julianDay);
+        return mShortWeekdays[getDayOfWeek(julianDay)] + " " + mShortMonths[monthDay >> 8] + " " +
+                mDaysOfMonth[monthDay & 0xff];
+    }
+
+    private String formatFullFriendly(String day, String monthDay) {
+        return String.format(mFullFriendlyFormat, day, monthDay);
+    }
+
+    /**
+     * @return Calendar.SUNDAY..Calendar.SATURDAY
+     */
+    static int getDayOfWeek(int julianDay) {
+        // Julian day 0 was a Monday
+        return (julianDay + 1) % 7 + 1;
+    }
+
+    /**
+     * Converts a julian day to a Gregorian month and day of the month without going through a
+     * Calendar.
+     *
+     * @return the Calendar month (0-11) in the second byte, and the day of the month (1-31) in
+     * the low byte
+     */
+    static int getMonthAndDay(int julianDay) {
+        // Days since 0000-03-01, so that leap days fall at the end of each year
+        long days = (long) julianDay - EPOCH_JULIAN_DAY + 719468;
+        long era = (days >= 0 ? days : days - 146096) / 146097;
+        long dayOfEra = days - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+        int month = (int) (shiftedMonth < 10 ? shiftedMonth + 2 : shiftedMonth - 10);
+        return (month << 8) | day;
+    }
+}
@@ -16,13 +16,9 @@
 package com.example.android.sunshine.app;
 
 import android.content.Intent;
-import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
-import android.support.v4.app.LoaderManager;
-import android.support.v4.content.CursorLoader;
-import android.support.v4.content.Loader;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.CardView;
 import android.support.v7.widget.ShareActionProvider;
@@ -34,17 +30,20 @@ import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.ViewParent;
+import android.view.ViewTreeObserver;
 import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.bumptech.glide.Glide;
 import com.example.android.sunshine.app.data.WeatherContract;
-import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.app.perf.DetailLatencyTimer;
+import com.example.android.sunshine.app.perf.FrameMonitor;
 
 /**
- * A placeholder fragment containing a simple view.
+ * Shows one day of the forecast.  The day comes from the {@link ForecastRepository}, which
+ * already holds what the list shows, so only the few details the list lacks can ever be waited on.
  */
-public class DetailFragment extends Fragment implements LoaderManager.LoaderCallbacks<Cursor> {
+public class DetailFragment extends Fragment implements ForecastRepository.Listener {
 
     private static final String LOG_TAG = DetailFragment.class.getSimpleName();
     static final String DETAIL_URI = "URI";
@@ -52,40 +51,19 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
 
     private static final String FORECAST_SHARE_HASHTAG = " #SunshineApp";
 
+    // Comfortably longer than the enter transition, at 60Hz
+    private static final int TRANSITION_FRAMES = 30;
+
     private String mForecast;
     private Uri mUri;
     private boolean mTransitionAnimation;
 
-    private static final int DETAIL_LOADER = 0;
-
-    private static final String[] DETAIL_COLUMNS = {
-            WeatherEntry.TABLE_NAME + "." + WeatherEntry._ID,
-            WeatherEntry.COLUMN_DATE,
-            WeatherEntry.COLUMN_SHORT_DESC,
-            WeatherEntry.COLUMN_MAX_TEMP,
-            WeatherEntry.COLUMN_MIN_TEMP,
-            WeatherEntry.COLUMN_HUMIDITY,
-            WeatherEntry.COLUMN_PRESSURE,
-            WeatherEntry.COLUMN_WIND_SPEED,
-            WeatherEntry.COLUMN_DEGREES,
-            WeatherEntry.COLUMN_WEATHER_ID,
-            // This works because the WeatherProvider returns location data joined with
-            // weather data, even though they're stored in two different tables.
-            WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING
-    };
-
-    // These indices are tied to DETAIL_COLUMNS.  If DETAIL_COLUMNS changes, these
-    // must change.
-    public static final int COL_WEATHER_ID = 0;
-    public static final int COL_WEATHER_DATE = 1;
-    public static final int COL_WEATHER_DESC = 2;
-    public static final int COL_WEATHER_MAX_TEMP = 3;
-    public static final int COL_WEATHER_MIN_TEMP = 4;
-    public static final int COL_WEATHER_HUMIDITY = 5;
-    public static final int COL_WEATHER_PRESSURE = 6;
-    public static final int COL_WEATHER_WIND_SPEED = 7;
-    public static final int COL_WEATHER_DEGREES = 8;
-    public static final int COL_WEATHER_CONDITION_ID = 9;
+    private ForecastRepository mRepository;
+    // What's on screen, so each change only binds what it has to
+    private ForecastItem mBoundItem;
+    private ForecastDetails mBoundDetails;
+    // Whether the transition and the toolbar have been set up for the day yet
+    private boolean mShown;
 
     private ImageView mIconView;
     private TextView mDateView;
@@ -153,8 +131,18 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
 
     @Override
     public void onActivityCreated(Bundle savedInstanceState) {
-        getLoaderManager().initLoader(DETAIL_LOADER, null, this);
         super.onActivityCreated(savedInstanceState);
+        mRepository = ForecastRepository.getInstance(getActivity());
+        mRepository.addListener(this);
+        bind();
+    }
+
+    @Override
+    public void onDestroyView() {
+        if (null != mRepository) {
+            mRepository.removeListener(this);
+        }
+        super.onDestroyView();
     }
 
     void onLocationChanged( String newLocation ) {
@@ -164,111 +152,124 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
             long date = WeatherContract.WeatherEntry.getDateFromUri(uri);
             Uri updatedUri = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(newLocation, date);
             mUri = updatedUri;
-            getLoaderManager().restartLoader(DETAIL_LOADER, null, this);
+            bind();
         }
     }
 
     @Override
-    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
-        if ( null != mUri ) {
-            // Now create and return a CursorLoader that will take care of
-            // creating a Cursor for the data being displayed.
-            return new CursorLoader(
-                    getActivity(),
-                    mUri,
-                    DETAIL_COLUMNS,
-                    null,
-                    null,
-                    null
-            );
-        }
-        ViewParent vp = getView().getParent();
-        if ( vp instanceof CardView ) {
-            ((View)vp).setVisibility(View.INVISIBLE);
-        }
-        return null;
+    public void onForecastChanged() {
+        bind();
     }
 
-    @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        if (data != null && data.moveToFirst()) {
+    private void bind() {
+        if ( null == mUri ) {
             ViewParent vp = getView().getParent();
             if ( vp instanceof CardView ) {
-                ((View)vp).setVisibility(View.VISIBLE);
+                ((View)vp).setVisibility(View.INVISIBLE);
             }
+            return;
+        }
+        String locationSetting = WeatherContract.WeatherEntry.getLocationSettingFromUri(mUri);
+        long date = WeatherContract.WeatherEntry.getDateFromUri(mUri);
 
-            // Read weather condition ID from cursor
-            int weatherId = data.getInt(COL_WEATHER_CONDITION_ID);
-
-            if ( Utility.usingLocalGraphics(getActivity()) ) {
-                mIconView.setImageResource(Utility.getArtResourceForWeatherCondition(weatherId));
-            } else {
-                // Use weather art image
-                Glide.with(this)
-                        .load(Utility.getArtUrlForWeatherCondition(getActivity(), weatherId))
-                        .error(Utility.getArtResourceForWeatherCondition(weatherId))
-                        .crossFade()
-                        .into(mIconView);
+        ForecastSnapshot snapshot = mRepository.getSnapshot(locationSetting);
+        if ( null == snapshot ) {
+            // Being loaded; we're told when it's in
+            return;
+        }
+        boolean itemChanged = false;
+        int position = snapshot.indexOfDate(date);
+        if ( position != -1 ) {
+            ForecastItem item = snapshot.get(position);
+            if ( null == mBoundItem || !mBoundItem.hasSameContents(item) ) {
+                bindItem(item);
+                itemChanged = true;
             }
+            // Loaded with the rest of the list's days the first time anyone needs them
+            ForecastDetails details = mRepository.getDetails(locationSetting, date);
+            if ( null != details && details != mBoundDetails ) {
+                bindDetails(details);
+            }
+        }
+        // Again whenever the day changes, so the share text follows it
+        if ( !mShown || itemChanged ) {
+            mShown = true;
+            onShown();
+        }
+    }
 
-            // Read date from cursor and update views for day of week and date
-            long date = data.getLong(COL_WEATHER_DATE);
-            String dateText = Utility.getFullFriendlyDayString(getActivity(),date);
-            mDateView.setText(dateText);
-
-            // Get description from weather condition ID
-            String description = Utility.getStringForWeatherCondition(getActivity(), weatherId);
-            mDescriptionView.setText(description);
-            mDescriptionView.setContentDescription(getString(R.string.a11y_forecast, description));
-
-            // For accessibility, add a content description to the icon field. Because the ImageView
-            // is independently focusable, it's better to have a description of the image. Using
-            // null is appropriate when the image is purely decorative or when the image already
-            // has text describing it in the same UI component.
-            mIconView.setContentDescription(getString(R.string.a11y_forecast_icon, description));
-
-            // Read high temperature from cursor and update view
-            boolean isMetric = Utility.isMetric(getActivity());
-
-            double high = data.getDouble(COL_WEATHER_MAX_TEMP);
-            String highString = Utility.formatTemperature(getActivity(), high);
-            mHighTempView.setText(highString);
-            mHighTempView.setContentDescription(getString(R.string.a11y_high_temp, highString));
-
-            // Read low temperature from cursor and update view
-            double low = data.getDouble(COL_WEATHER_MIN_TEMP);
-            String lowString = Utility.formatTemperature(getActivity(), low);
-            mLowTempView.setText(lowString);
-            mLowTempView.setContentDescription(getString(R.string.a11y_low_temp, lowString));
-
-            // Read humidity from cursor and update view
-            float humidity = data.getFloat(COL_WEATHER_HUMIDITY);
-            mHumidityView.setText(getActivity().getString(R.string.format_humidity, humidity));
-            mHumidityView.setContentDescription(getString(R.string.a11y_humidity, mHumidityView.getText()));
-            mHumidityLabelView.setContentDescription(mHumidityView.getContentDescription());
-
-            // Read wind speed and direction from cursor and update view
-            float windSpeedStr = data.getFloat(COL_WEATHER_WIND_SPEED);
-            float windDirStr = data.getFloat(COL_WEATHER_DEGREES);
-            mWindView.setText(Utility.getFormattedWind(getActivity(), windSpeedStr, windDirStr));
-            mWindView.setContentDescription(getString(R.string.a11y_wind, mWindView.getText()));
-            mWindLabelView.setContentDescription(mWindView.getContentDescription());
-
-            // Read pressure from cursor and update view
-            float pressure = data.getFloat(COL_WEATHER_PRESSURE);
-            mPressureView.setText(getString(R.string.format_pressure, pressure));
-            mPressureView.setContentDescription(getString(R.string.a11y_pressure, mPressureView.getText()));
-            mPressureLabelView.setContentDescription(mPressureView.getContentDescription());
-
-            // We still need this for the share intent
-            mForecast = String.format("%s - %s - %s/%s", dateText, description, high, low);
+    private void bindItem(ForecastItem item) {
+        mBoundItem = item;
+        ViewParent vp = getView().getParent();
+        if ( vp instanceof CardView ) {
+            ((View)vp).setVisibility(View.VISIBLE);
+        }
 
+        if ( null == item.mArtUrl ) {
+            mIconView.setImageResource(item.mArtResource);
+        } else {
+            // Use weather art image
+            ArtPrefetcher.load(Glide.with(this), item.mArtUrl, item.mArtResource)
+                    .crossFade()
+                    .into(mIconView);
         }
+
+        String dateText = Utility.getFullFriendlyDayString(getActivity(), item.mDate);
+        mDateView.setText(dateText);
+
+        mDescriptionView.setText(item.mDescription);
+        mDescriptionView.setContentDescription(item.mDescriptionA11y);
+
+        // For accessibility, add a content description to the icon field. Because the ImageView
+        // is independently focusable, it's better to have a description of the image. Using
+        // null is appropriate when the image is purely decorative or when the image already
+        // has text describing it in the same UI component.
+        mIconView.setContentDescription(getString(R.string.a11y_forecast_icon, item.mDescription));
+
+        mHighTempView.setText(item.mHighText);
+        mHighTempView.setContentDescription(item.mHighA11y);
+        mLowTempView.setText(item.mLowText);
+        mLowTempView.setContentDescription(item.mLowA11y);
+
+        // We still need this for the share intent
+        mForecast = String.format("%s - %s - %s/%s", dateText, item.mDescription,
+                item.mHighText, item.mLowText);
+
+        final long date = item.mDate;
+        final View rootView = getView();
+        rootView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                rootView.getViewTreeObserver().removeOnPreDrawListener(this);
+                DetailLatencyTimer.onDetailDrawn(date);
+                return true;
+            }
+        });
+    }
+
+    private void bindDetails(ForecastDetails details) {
+        mBoundDetails = details;
+        mHumidityView.setText(details.mHumidityText);
+        mHumidityView.setContentDescription(details.mHumidityA11y);
+        mHumidityLabelView.setContentDescription(details.mHumidityA11y);
+
+        mWindView.setText(details.mWindText);
+        mWindView.setContentDescription(details.mWindA11y);
+        mWindLabelView.setContentDescription(details.mWindA11y);
+
+        mPressureView.setText(details.mPressureText);
+        mPressureView.setContentDescription(details.mPressureA11y);
+        mPressureLabelView.setContentDescription(details.mPressureA11y);
+    }
+
+    private void onShown() {
         AppCompatActivity activity = (AppCompatActivity)getActivity();
         Toolbar toolbarView = (Toolbar) getView().findViewById(R.id.toolbar);
 
         // We need to start the enter transition after the data has loaded
         if ( mTransitionAnimation ) {
+            FrameMonitor.trackFrames(FrameMonitor.SCREEN_DETAIL,
+                    FrameMonitor.INTERACTION_TRANSITION, TRANSITION_FRAMES);
             activity.supportStartPostponedEnterTransition();
 
             if ( null != toolbarView ) {
@@ -286,7 +287,4 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
             }
         }
     }
-
-    @Override
-    public void onLoaderReset(Loader<Cursor> loader) { }
-}
\ No newline at end of file
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.resource.drawable.GlideDrawable;
+import com.bumptech.glide.request.animation.GlideAnimation;
+import com.bumptech.glide.request.target.SimpleTarget;
+import com.bumptech.glide.request.target.Target;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Decodes the art of the forecast rows about to scroll into view, at the size the list shows
+ * it, so that binding them finds it in Glide's memory cache instead of going to disk or the
+ * network mid-fling.
+ */
+public class ForecastArtPreloader extends RecyclerView.OnScrollListener {
+    // How many rows past the visible ones to preload
+    private static final int PRELOAD_AHEAD = 5;
+    // One target per image; a forecast only shows a handful of different conditions
+    private static final int MAX_TARGETS = 8;
+
+    private final Context mContext;
+    private final RequestManager mGlide;
+    private final ForecastAdapter mAdapter;
+    private final int mIconSize;
+    // Keyed by art URL, least recently used first
+    private final LinkedHashMap<String, Target<GlideDrawable>> mTargets =
+            new LinkedHashMap<>(MAX_TARGETS, 0.75f, true);
+
+    public ForecastArtPreloader(Context context, ForecastAdapter adapter) {
+        mContext = context;
+        mGlide = Glide.with(context);
+        mAdapter = adapter;
+        mIconSize = context.getResources().getDimensionPixelSize(R.dimen.list_icon);
+    }
+
+    /**
+     * Downloads all of the snapshot's art and decodes it for the list.  Call when the loader
+     * delivers a new snapshot.
+     */
+    public void onSnapshotLoaded(ForecastSnapshot snapshot) {
+        ArtPrefetcher.prefetch(mContext, snapshot);
+        preload(0, snapshot.size());
+    }
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+        if (dy == 0 || !(layoutManager instanceof LinearLayoutManager)) {
+            return;
+        }
+        LinearLayoutManager linearLayoutManager = (LinearLayoutManager) layoutManager;
+        if (dy > 0) {
+            int first = linearLayoutManager.findLastVisibleItemPosition() + 1;
+            preload(first, first + PRELOAD_AHEAD);
+        } else {
+            int last = linearLayoutManager.findFirstVisibleItemPosition();
+            preload(last - PRELOAD_AHEAD, last);
+        }
+    }
+
+    /**
+     * Releases everything we are holding on to.
+     */
+    public void clear() {
+        for (Target<GlideDrawable> target : mTargets.values()) {
+            Glide.clear(target);
+        }
+        mTargets.clear();
+    }
+
+    // Preloads the rows in [from, to)
+    private void preload(int from, int to) {
+        ForecastSnapshot snapshot = mAdapter.getSnapshot();
+        from = Math.max(from, 0);
+        to = Math.min(to, snapshot.size());
+        for (int position = from; position < to; position++) {
+            // The today row shows its art at another size, and is only ever at the top
+            if (mAdapter.getItemViewType(position) != ForecastAdapter.VIEW_TYPE_FUTURE_DAY) {
+                continue;
+            }
+            ForecastItem item = snapshot.get(position);
+            if (null == item.mArtUrl || null != mTargets.get(item.mArtUrl)) {
+                continue;
+            }
+            Target<GlideDrawable> target = new SimpleTarget<GlideDrawable>(mIconSize, mIconSize) {
+                @Override
+                public void onResourceReady(GlideDrawable resource,
+                                            GlideAnimation<? super GlideDrawable> glideAnimation) {
+                }
+            };
+            // Must match the request ForecastAdapter makes for the row, or we warm the wrong entry
+            ArtPrefetcher.load(mGlide, item.mArtUrl, item.mIconResource).into(target);
+            mTargets.put(item.mArtUrl, target);
+            trimTargets();
+        }
+    }
+
+    private void trimTargets() {
+        Iterator<Map.Entry<String, Target<GlideDrawable>>> iterator = mTargets.entrySet().iterator();
+        while (mTargets.size() > MAX_TARGETS && iterator.hasNext()) {
+            Glide.clear(iterator.next().getValue());
+            iterator.remove();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+/**
+ * The part of a day's forecast only the detail view shows, already formatted.  Goes with the
+ * {@link ForecastItem} for the same date, which has everything the list shows.
+ */
+public class ForecastDetails {
+    static final String[] DETAIL_COLUMNS = {
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_HUMIDITY,
+            WeatherEntry.COLUMN_PRESSURE,
+            WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherEntry.COLUMN_DEGREES
+    };
+
+    // These indices are tied to DETAIL_COLUMNS.  If DETAIL_COLUMNS changes, these
+    // must change.
+    static final int COL_WEATHER_DATE = 0;
+    static final int COL_WEATHER_HUMIDITY = 1;
+    static final int COL_WEATHER_PRESSURE = 2;
+    static final int COL_WEATHER_WIND_SPEED = 3;
+    static final int COL_WEATHER_DEGREES = 4;
+
+    public final long mDate;
+
+    public final String mHumidityText;
+    public final String mHumidityA11y;
+    public final String mWindText;
+    public final String mWindA11y;
+    public final String mPressureText;
+    public final String mPressureA11y;
+
+    public ForecastDetails(long date, String humidityText, String humidityA11y,
+                           String windText, String windA11y,
+                           String pressureText, String pressureA11y) {
+        mDate = date;
+        mHumidityText = humidityText;
+        mHumidityA11y = humidityA11y;
+        mWindText = windText;
+        mWindA11y = windA11y;
+        mPressureText = pressureText;
+        mPressureA11y = pressureA11y;
+    }
+
+    /**
+     * Builds the details from the current row of a cursor using {@link #DETAIL_COLUMNS}.  Reads
+     * preferences and resources, so it belongs off the main thread.
+     */
+    static ForecastDetails fromCursor(Context context, Cursor cursor) {
+        String humidityText = context.getString(R.string.format_humidity,
+                cursor.getFloat(COL_WEATHER_HUMIDITY));
+        String windText = Utility.getFormattedWind(context,
+                cursor.getFloat(COL_WEATHER_WIND_SPEED), cursor.getFloat(COL_WEATHER_DEGREES));
+        String pressureText = context.getString(R.string.format_pressure,
+                cursor.getFloat(COL_WEATHER_PRESSURE));
+
+        return new ForecastDetails(cursor.getLong(COL_WEATHER_DATE),
+                humidityText, context.getString(R.string.a11y_humidity, humidityText),
+                windText, context.getString(R.string.a11y_wind, windText),
+                pressureText, context.getString(R.string.a11y_pressure, pressureText));
+    }
+}
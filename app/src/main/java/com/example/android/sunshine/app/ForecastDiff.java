@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.support.v7.widget.RecyclerView;
+
+/**
+ * The list updates that turn one {@link ForecastSnapshot} into the next, keyed by date.
+ *
+ * Both snapshots are sorted by date and dates are unique, so a single merge walk finds every
+ * removed, inserted and changed row; rows can never move relative to each other.  Diffs are
+ * computed on the loader thread and only dispatched on the main thread.
+ */
+public class ForecastDiff {
+    static final int OP_REMOVE = 0;
+    static final int OP_INSERT = 1;
+    static final int OP_CHANGE = 2;
+
+    // Ops in dispatch order, three ints each: type, position, count.  Positions already account
+    // for the ops before them, the way RecyclerView expects them.
+    private final int[] mOps;
+    private final int mBaseGeneration;
+
+    private ForecastDiff(int[] ops, int baseGeneration) {
+        mOps = ops;
+        mBaseGeneration = baseGeneration;
+    }
+
+    public static ForecastDiff compute(ForecastSnapshot oldSnapshot, ForecastSnapshot newSnapshot) {
+        OpList ops = new OpList();
+        int oldSize = oldSnapshot.size();
+        int newSize = newSnapshot.size();
+        int oldIndex = 0;
+        int newIndex = 0;
+        while (oldIndex < oldSize || newIndex < newSize) {
+            // newIndex is also the adapter position once the ops so far have been applied
+            if (newIndex == newSize) {
+                ops.add(OP_REMOVE, newIndex);
+                oldIndex++;
+                continue;
+            }
+            if (oldIndex == oldSize) {
+                ops.add(OP_INSERT, newIndex);
+                newIndex++;
+                continue;
+            }
+            ForecastItem oldItem = oldSnapshot.get(oldIndex);
+            ForecastItem newItem = newSnapshot.get(newIndex);
+            if (oldItem.mDate < newItem.mDate) {
+                ops.add(OP_REMOVE, newIndex);
+                oldIndex++;
+            } else if (oldItem.mDate > newItem.mDate) {
+                ops.add(OP_INSERT, newIndex);
+                newIndex++;
+            } else {
+                if (!oldItem.hasSameContents(newItem)) {
+                    ops.add(OP_CHANGE, newIndex);
+                }
+                oldIndex++;
+                newIndex++;
+            }
+        }
+
+        // The first row uses its own layout, so whichever row ends up there needs a rebind
+        if (newSize > 0 && oldSize > 0 &&
+                oldSnapshot.get(0).mDate != newSnapshot.get(0).mDate) {
+            ops.add(OP_CHANGE, 0);
+        }
+        return new ForecastDiff(ops.toArray(), oldSnapshot.getGeneration());
+    }
+
+    /**
+     * @return true if this diff starts from the given snapshot
+     */
+    public boolean appliesTo(ForecastSnapshot snapshot) {
+        return snapshot != null && snapshot.getGeneration() == mBaseGeneration;
+    }
+
+    public boolean isEmpty() {
+        return mOps.length == 0;
+    }
+
+    public void dispatchTo(RecyclerView.Adapter adapter) {
+        for (int i = 0; i < mOps.length; i += 3) {
+            int position = mOps[i + 1];
+            int count = mOps[i + 2];
+            switch (mOps[i]) {
+                case OP_REMOVE:
+                    adapter.notifyItemRangeRemoved(position, count);
+                    break;
+                case OP_INSERT:
+                    adapter.notifyItemRangeInserted(position, count);
+                    break;
+                case OP_CHANGE:
+                    adapter.notifyItemRangeChanged(position, count);
+                    break;
+            }
+        }
+    }
+
+    int[] getOps() {
+        return mOps;
+    }
+
+    /**
+     * Collects ops, merging each one into the previous op when they form a single range.
+     */
+    private static class OpList {
+        private int[] mOps = new int[3 * 4];
+        private int mSize;
+
+        void add(int type, int position) {
+            if (mSize > 0 && mOps[mSize - 3] == type) {
+                int lastPosition = mOps[mSize - 2];
+                int lastCount = mOps[mSize - 1];
+                // Removals all happen at the same position; inserts and changes run forwards
+                if ((type == OP_REMOVE && position == lastPosition) ||
+                        (type != OP_REMOVE && position == lastPosition + lastCount)) {
+                    mOps[mSize - 1]++;
+                    return;
+                }
+            }
+            if (mSize == mOps.length) {
+                int[] grown = new int[mOps.length * 2];
+                System.arraycopy(mOps, 0, grown, 0, mSize);
+                mOps = grown;
+            }
+            mOps[mSize++] = type;
+            mOps[mSize++] = position;
+            mOps[mSize++] = 1;
+        }
+
+        int[] toArray() {
+            int[] ops = new int[mSize];
+            System.arraycopy(mOps, 0, ops, 0, mSize);
+            return ops;
+        }
+    }
+}
@@ -20,7 +20,6 @@ import android.app.Activity;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.res.TypedArray;
-import android.database.Cursor;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
@@ -28,7 +27,6 @@ import android.preference.PreferenceManager;
 import android.support.design.widget.AppBarLayout;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.LoaderManager;
-import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
 import android.support.v4.view.ViewCompat;
 import android.support.v7.widget.LinearLayoutManager;
@@ -46,26 +44,33 @@ import android.widget.AbsListView;
 import android.widget.TextView;
 
 import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.perf.FrameMonitor;
+import com.example.android.sunshine.app.startup.StartupTimer;
 import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
 
 /**
  * Encapsulates fetching the forecast and displaying it as a {@link android.support.v7.widget.RecyclerView} layout.
  */
-public class ForecastFragment extends Fragment implements LoaderManager.LoaderCallbacks<Cursor>, SharedPreferences.OnSharedPreferenceChangeListener {
+public class ForecastFragment extends Fragment implements LoaderManager.LoaderCallbacks<ForecastSnapshot>, SharedPreferences.OnSharedPreferenceChangeListener {
     public static final String LOG_TAG = ForecastFragment.class.getSimpleName();
     private ForecastAdapter mForecastAdapter;
+    private ForecastArtPreloader mArtPreloader;
     private RecyclerView mRecyclerView;
     private boolean mUseTodayLayout, mAutoSelectView;
     private int mChoiceMode;
     private boolean mHoldForTransition;
     private long mInitialSelectedDate = -1;
+    // True while the list shows the saved snapshot and the loader hasn't delivered yet
+    private boolean mShowingSavedSnapshot;
 
     private static final String SELECTED_KEY = "selected_position";
 
     private static final int FORECAST_LOADER = 0;
+    // About half a second of frames at 60Hz, long enough for the item animations
+    private static final int SWAP_FRAMES = 30;
     // For the forecast view we're showing only a small subset of the stored data.
     // Specify the columns we need.
-    private static final String[] FORECAST_COLUMNS = {
+    static final String[] FORECAST_COLUMNS = {
             // In this case the id needs to be fully qualified with a table name, since
             // the content provider joins the location & weather tables in the background
             // (both have an _id column)
@@ -200,6 +205,34 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         // specify an adapter (see also next example)
         mRecyclerView.setAdapter(mForecastAdapter);
 
+        // Decode the art of rows before they scroll into view
+        mArtPreloader = new ForecastArtPreloader(getActivity(), mForecastAdapter);
+        mRecyclerView.addOnScrollListener(mArtPreloader);
+
+        mRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+                // Time the frames of drags and flings, parallax and elevation included
+                switch (newState) {
+                    case RecyclerView.SCROLL_STATE_DRAGGING:
+                        FrameMonitor.begin(FrameMonitor.SCREEN_FORECAST,
+                                FrameMonitor.INTERACTION_SCROLL);
+                        break;
+                    case RecyclerView.SCROLL_STATE_SETTLING:
+                        FrameMonitor.begin(FrameMonitor.SCREEN_FORECAST,
+                                FrameMonitor.INTERACTION_FLING);
+                        break;
+                    default:
+                        FrameMonitor.end(FrameMonitor.SCREEN_FORECAST,
+                                FrameMonitor.INTERACTION_SCROLL);
+                        FrameMonitor.end(FrameMonitor.SCREEN_FORECAST,
+                                FrameMonitor.INTERACTION_FLING);
+                        // Once the list settles, get the detail view's columns ready for a tap
+                        prefetchDetails();
+                }
+            }
+        });
+
         final View parallaxView = rootView.findViewById(R.id.parallax_bar);
         if (null != parallaxView) {
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
@@ -259,6 +292,18 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         if ( mHoldForTransition ) {
             getActivity().supportPostponeEnterTransition();
         }
+        if ( null == getLoaderManager().getLoader(FORECAST_LOADER) ) {
+            // Starting from scratch rather than rotating: draw the list we showed last time
+            // right away, and the transition can run off it too.  The loader catches up with
+            // whatever changed since.
+            ForecastSnapshot saved = ForecastSnapshotFile.read(getActivity());
+            if ( null != saved ) {
+                ForecastRepository.getInstance(getActivity())
+                        .publish(Utility.getPreferredLocation(getActivity()), saved);
+                mShowingSavedSnapshot = true;
+                showSnapshot(saved);
+            }
+        }
         getLoaderManager().initLoader(FORECAST_LOADER, null, this);
         super.onActivityCreated(savedInstanceState);
     }
@@ -273,11 +318,10 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         // intent can is detailed in the "Common Intents" page of Android's developer site:
         // http://developer.android.com/guide/components/intents-common.html#Maps
         if (null != mForecastAdapter) {
-            Cursor c = mForecastAdapter.getCursor();
-            if (null != c) {
-                c.moveToPosition(0);
-                String posLat = c.getString(COL_COORD_LAT);
-                String posLong = c.getString(COL_COORD_LONG);
+            ForecastSnapshot snapshot = mForecastAdapter.getSnapshot();
+            if (snapshot.size() > 0) {
+                String posLat = snapshot.getCoordLat();
+                String posLong = snapshot.getCoordLong();
                 Uri geoLocation = Uri.parse("geo:" + posLat + "," + posLong);
 
                 Intent intent = new Intent(Intent.ACTION_VIEW);
@@ -302,33 +346,44 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
 
 
     @Override
-    public Loader<Cursor> onCreateLoader(int i, Bundle bundle) {
+    public Loader<ForecastSnapshot> onCreateLoader(int i, Bundle bundle) {
         // This is called when a new Loader needs to be created.  This
         // fragment only uses one loader, so we don't care about checking the id.
 
         // To only show current and future dates, filter the query to return weather only for
         // dates after or including today.
 
-        // Sort order:  Ascending, by date.
-        String sortOrder = WeatherContract.WeatherEntry.COLUMN_DATE + " ASC";
-
+        // The loader sorts ascending by date, and maps the rows to list items in the background.
         String locationSetting = Utility.getPreferredLocation(getActivity());
         Uri weatherForLocationUri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
                 locationSetting, System.currentTimeMillis());
 
-        return new CursorLoader(getActivity(),
-                weatherForLocationUri,
-                FORECAST_COLUMNS,
-                null,
-                null,
-                sortOrder);
+        return new ForecastLoader(getActivity(), weatherForLocationUri,
+                mForecastAdapter.getSnapshot());
     }
 
     @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        mForecastAdapter.swapCursor(data);
+    public void onLoadFinished(Loader<ForecastSnapshot> loader, ForecastSnapshot data) {
+        if ( mShowingSavedSnapshot ) {
+            mShowingSavedSnapshot = false;
+            if ( data.size() > 0 ) {
+                // Selection and the transition were already taken care of with the saved list
+                trackSwapFrames();
+                mForecastAdapter.swapSnapshot(data);
+                mArtPreloader.onSnapshotLoaded(data);
+                updateEmptyView();
+                return;
+            }
+        }
+        showSnapshot(data);
+    }
+
+    private void showSnapshot(ForecastSnapshot data) {
+        trackSwapFrames();
+        mForecastAdapter.swapSnapshot(data);
+        mArtPreloader.onSnapshotLoaded(data);
         updateEmptyView();
-        if ( data.getCount() == 0 ) {
+        if ( data.size() == 0 ) {
             getActivity().supportStartPostponedEnterTransition();
         } else {
             mRecyclerView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
@@ -338,19 +393,12 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
                     // we see Children.
                     if (mRecyclerView.getChildCount() > 0) {
                         mRecyclerView.getViewTreeObserver().removeOnPreDrawListener(this);
+                        StartupTimer.onFirstForecastDrawn();
                         int position = mForecastAdapter.getSelectedItemPosition();
                         if (position == RecyclerView.NO_POSITION &&
                                 -1 != mInitialSelectedDate) {
-                            Cursor data = mForecastAdapter.getCursor();
-                            int count = data.getCount();
-                            int dateColumn = data.getColumnIndex(WeatherContract.WeatherEntry.COLUMN_DATE);
-                            for ( int i = 0; i < count; i++ ) {
-                                data.moveToPosition(i);
-                                if ( data.getLong(dateColumn) == mInitialSelectedDate ) {
-                                    position = i;
-                                    break;
-                                }
-                            }
+                            // The snapshot indexes its dates, so this doesn't walk the list
+                            position = mForecastAdapter.getPositionForItemId(mInitialSelectedDate);
                         }
                         if (position == RecyclerView.NO_POSITION) position = 0;
                         // If we don't need to restart the loader, and there's a desired position to restore
@@ -363,6 +411,7 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
                         if ( mHoldForTransition ) {
                             getActivity().supportStartPostponedEnterTransition();
                         }
+                        prefetchDetails();
                         return true;
                     }
                     return false;
@@ -374,17 +423,31 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
 
 
 
+    // Times the item animations and relayout a new list brings
+    private void trackSwapFrames() {
+        FrameMonitor.trackFrames(FrameMonitor.SCREEN_FORECAST,
+                FrameMonitor.INTERACTION_LOADER_SWAP, SWAP_FRAMES);
+    }
+
+    private void prefetchDetails() {
+        ForecastRepository.getInstance(getActivity())
+                .prefetchDetails(Utility.getPreferredLocation(getActivity()));
+    }
+
     @Override
     public void onDestroy() {
         super.onDestroy();
         if (null != mRecyclerView) {
             mRecyclerView.clearOnScrollListeners();
         }
+        if (null != mArtPreloader) {
+            mArtPreloader.clear();
+        }
     }
 
     @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
-        mForecastAdapter.swapCursor(null);
+    public void onLoaderReset(Loader<ForecastSnapshot> loader) {
+        mForecastAdapter.swapSnapshot(null);
     }
 
     public void setUseTodayLayout(boolean useTodayLayout) {
@@ -432,6 +495,7 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
     @Override
     public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
         if (key.equals(getString(R.string.pref_location_status_key))) {
+            WeatherPreferences.refresh(getActivity());
             updateEmptyView();
         }
     }
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.text.TextUtils;
+
+/**
+ * One row of the forecast list, with everything the {@link ForecastAdapter} shows already
+ * formatted.  Items are built off the main thread by the {@link ForecastLoader} and never change,
+ * so binding a row only has to assign fields.
+ */
+public class ForecastItem {
+    public final long mDate;
+    public final int mWeatherId;
+
+    // The day label, and the longer "Today, June 8" form used by the today layout
+    public final String mDayText;
+    public final String mLongDayText;
+
+    public final int mIconResource;
+    public final int mArtResource;
+    // null when the local graphics are in use
+    public final String mArtUrl;
+
+    public final String mDescription;
+    public final String mDescriptionA11y;
+    public final String mHighText;
+    public final String mHighA11y;
+    public final String mLowText;
+    public final String mLowA11y;
+
+    public ForecastItem(long date, int weatherId, String dayText, String longDayText,
+                        int iconResource, int artResource, String artUrl,
+                        String description, String descriptionA11y,
+                        String highText, String highA11y, String lowText, String lowA11y) {
+        mDate = date;
+        mWeatherId = weatherId;
+        mDayText = dayText;
+        mLongDayText = longDayText;
+        mIconResource = iconResource;
+        mArtResource = artResource;
+        mArtUrl = artUrl;
+        mDescription = description;
+        mDescriptionA11y = descriptionA11y;
+        mHighText = highText;
+        mHighA11y = highA11y;
+        mLowText = lowText;
+        mLowA11y = lowA11y;
+    }
+
+    /**
+     * Builds an item from the current row of a cursor using the forecast projection of
+     * {@link ForecastLoader}.  Reads preferences and resources, so it belongs off the main thread.
+     */
+    static ForecastItem fromCursor(Context context, Cursor cursor, boolean localGraphics) {
+        long date = cursor.getLong(ForecastFragment.COL_WEATHER_DATE);
+        int weatherId = cursor.getInt(ForecastFragment.COL_WEATHER_CONDITION_ID);
+
+        String dayText = Utility.getFriendlyDayString(context, date, false);
+        String longDayText = Utility.getFriendlyDayString(context, date, true);
+
+        String description = Utility.getStringForWeatherCondition(context, weatherId);
+        String highText = Utility.formatTemperature(context,
+                cursor.getDouble(ForecastFragment.COL_WEATHER_MAX_TEMP));
+        String lowText = Utility.formatTemperature(context,
+                cursor.getDouble(ForecastFragment.COL_WEATHER_MIN_TEMP));
+
+        return new ForecastItem(date, weatherId, dayText, longDayText,
+                Utility.getIconResourceForWeatherCondition(weatherId),
+                Utility.getArtResourceForWeatherCondition(weatherId),
+                localGraphics ? null : Utility.getArtUrlForWeatherCondition(context, weatherId),
+                description, context.getString(R.string.a11y_forecast, description),
+                highText, context.getString(R.string.a11y_high_temp, highText),
+                lowText, context.getString(R.string.a11y_low_temp, lowText));
+    }
+
+    /**
+     * @return true if binding {@code other} would show exactly what binding this item shows
+     */
+    boolean hasSameContents(ForecastItem other) {
+        return mDate == other.mDate
+                && mWeatherId == other.mWeatherId
+                && mIconResource == other.mIconResource
+                && mArtResource == other.mArtResource
+                && TextUtils.equals(mDayText, other.mDayText)
+                && TextUtils.equals(mLongDayText, other.mLongDayText)
+                && TextUtils.equals(mArtUrl, other.mArtUrl)
+                && TextUtils.equals(mDescriptionA11y, other.mDescriptionA11y)
+                && TextUtils.equals(mHighA11y, other.mHighA11y)
+                && TextUtils.equals(mLowA11y, other.mLowA11y)
+                && TextUtils.equals(mDescription, other.mDescription)
+                && TextUtils.equals(mHighText, other.mHighText)
+                && TextUtils.equals(mLowText, other.mLowText);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.v4.content.AsyncTaskLoader;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+
+/**
+ * Loads the forecast for a location and maps it to a {@link ForecastSnapshot} on the loader's
+ * background thread, so the list never has to touch a cursor or format anything while binding.
+ * Each snapshot also carries its {@link ForecastDiff} from the previously delivered one.
+ *
+ * Reloads whenever anything under {@link WeatherContract.WeatherEntry#CONTENT_URI} changes,
+ * which includes the unit and art pack changes the settings screen notifies.  Lists that differ
+ * from what was shown before are saved with {@link ForecastSnapshotFile} for the next start,
+ * and every list delivered is published to the {@link ForecastRepository} for the detail view.
+ */
+public class ForecastLoader extends AsyncTaskLoader<ForecastSnapshot> {
+    private final ForceLoadContentObserver mObserver = new ForceLoadContentObserver();
+    private final Uri mUri;
+    // The last snapshot delivered; read on the loader thread to diff the next one against
+    private volatile ForecastSnapshot mSnapshot;
+    // What the list showed when we were created, to diff the first load against
+    private final ForecastSnapshot mShown;
+    private boolean mObserving;
+
+    /**
+     * @param shown the snapshot the list is showing now, such as one read from
+     *              {@link ForecastSnapshotFile}, or null
+     */
+    public ForecastLoader(Context context, Uri uri, ForecastSnapshot shown) {
+        super(context);
+        mUri = uri;
+        mShown = shown;
+    }
+
+    /**
+     * Queries the forecast at {@code uri} and maps it to list items.
+     */
+    static ForecastSnapshot query(Context context, Uri uri) {
+        Cursor cursor = context.getContentResolver().query(uri,
+                ForecastFragment.FORECAST_COLUMNS,
+                null,
+                null,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        if (cursor == null) {
+            return ForecastSnapshot.EMPTY;
+        }
+        try {
+            return ForecastSnapshot.fromCursor(context, cursor);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Override
+    public ForecastSnapshot loadInBackground() {
+        ForecastSnapshot previous = (mSnapshot != null) ? mSnapshot : mShown;
+        ForecastSnapshot snapshot = query(getContext(), mUri).withDiffFrom(previous);
+        ForecastDiff diff = snapshot.getDiff();
+        if (diff == null || !diff.isEmpty()) {
+            ForecastSnapshotFile.write(getContext(),
+                    WeatherContract.WeatherEntry.getLocationSettingFromUri(mUri), snapshot);
+        }
+        return snapshot;
+    }
+
+    @Override
+    public void deliverResult(ForecastSnapshot snapshot) {
+        if (isReset()) {
+            return;
+        }
+        mSnapshot = snapshot;
+        ForecastRepository.getInstance(getContext()).publish(
+                WeatherContract.WeatherEntry.getLocationSettingFromUri(mUri), snapshot);
+        if (isStarted()) {
+            super.deliverResult(snapshot);
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (!mObserving) {
+            getContext().getContentResolver().registerContentObserver(
+                    WeatherContract.WeatherEntry.CONTENT_URI, true, mObserver);
+            mObserving = true;
+        }
+        if (mSnapshot != null) {
+            deliverResult(mSnapshot);
+        }
+        if (takeContentChanged() || mSnapshot == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onStopLoading();
+        if (mObserving) {
+            getContext().getContentResolver().unregisterContentObserver(mObserver);
+            mObserving = false;
+        }
+        mSnapshot = null;
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.util.LongSparseArray;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import java.util.ArrayList;
+
+/**
+ * The forecast the app is showing, shared by the list and the detail view.
+ *
+ * {@link ForecastLoader} publishes every list it loads here, so the detail view can bind a day
+ * straight from memory instead of querying for it.  The columns only the detail view shows are
+ * loaded once the list settles, or the first time anyone asks for them, for every day in the list
+ * with one query.  Any column may have changed with a new list, so its details are loaded again
+ * if they were loaded for the last one.
+ *
+ * The list's loader only runs while the list is started, so we follow changes to the weather
+ * too.  A change marks our list stale, and while anyone listens a stale list is reloaded unless
+ * the loader publishes a fresh one first.
+ *
+ * Everything here is main thread only; the queries run in the background and publish back.
+ */
+public class ForecastRepository {
+    public static final String LOG_TAG = ForecastRepository.class.getSimpleName();
+
+    /**
+     * Told whenever the list or its details change.
+     */
+    public interface Listener {
+        void onForecastChanged();
+    }
+
+    // Gives the list's own loader a chance to publish first when the weather changes, so
+    // the same rows aren't queried twice
+    private static final long RELOAD_DELAY_MS = 500;
+
+    private static ForecastRepository sInstance;
+
+    private final Context mContext;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final ArrayList<Listener> mListeners = new ArrayList<Listener>();
+
+    private String mLocationSetting;
+    private ForecastSnapshot mSnapshot;
+    // Whether the weather changed since mSnapshot was loaded
+    private boolean mStale;
+    // How many times the weather has changed, to tell whether it did during a load
+    private int mChanges;
+    // The location we're loading a list for ourselves, if any
+    private String mLoadingLocation;
+
+    // The details of mSnapshot's days by date, once loaded
+    private LongSparseArray<ForecastDetails> mDetails;
+    private boolean mLoadingDetails;
+
+    private final ContentObserver mObserver = new ContentObserver(mHandler) {
+        @Override
+        public void onChange(boolean selfChange) {
+            mChanges++;
+            mStale = true;
+            if (!mListeners.isEmpty()) {
+                postReload();
+            }
+        }
+    };
+
+    private final Runnable mReload = new Runnable() {
+        @Override
+        public void run() {
+            if (mStale && null != mLocationSetting) {
+                loadSnapshot(mLocationSetting);
+            }
+        }
+    };
+
+    public static ForecastRepository getInstance(Context context) {
+        if (null == sInstance) {
+            sInstance = new ForecastRepository(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private ForecastRepository(Context context) {
+        mContext = context;
+        // We live as long as the process, and so does this
+        context.getContentResolver().registerContentObserver(
+                WeatherContract.WeatherEntry.CONTENT_URI, true, mObserver);
+    }
+
+    /**
+     * Starts telling {@code listener} about changes.  A list that went stale while nobody
+     * listened is reloaded.
+     */
+    public void addListener(Listener listener) {
+        if (mListeners.isEmpty() && mStale) {
+            postReload();
+        }
+        mListeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        if (mListeners.remove(listener) && mListeners.isEmpty()) {
+            mHandler.removeCallbacks(mReload);
+        }
+    }
+
+    private void postReload() {
+        mHandler.removeCallbacks(mReload);
+        mHandler.postDelayed(mReload, RELOAD_DELAY_MS);
+    }
+
+    /**
+     * Replaces the list for a location.  Called with each list the {@link ForecastLoader}
+     * delivers, and with the one the list starts out from.
+     */
+    public void publish(String locationSetting, ForecastSnapshot snapshot) {
+        if (snapshot == mSnapshot) {
+            return;
+        }
+        mHandler.removeCallbacks(mReload);
+        mStale = false;
+        // The list only compares the columns it shows, so humidity, pressure or wind may have
+        // changed even for days whose row didn't.  Whoever had details wants the new ones too.
+        boolean reloadDetails = null != mDetails && locationSetting.equals(mLocationSetting);
+        mLocationSetting = locationSetting;
+        mSnapshot = snapshot;
+        mDetails = null;
+        if (reloadDetails && !mLoadingDetails) {
+            loadDetails();
+        }
+        notifyListeners();
+    }
+
+    /**
+     * @return the list for a location, or null if we don't have it yet.  In that case it is
+     * loaded, and listeners are told once it's in.
+     */
+    public ForecastSnapshot getSnapshot(String locationSetting) {
+        if (null != mSnapshot && locationSetting.equals(mLocationSetting)) {
+            return mSnapshot;
+        }
+        if (!locationSetting.equals(mLoadingLocation)) {
+            loadSnapshot(locationSetting);
+        }
+        return null;
+    }
+
+    /**
+     * @return the details of a day of the list {@link #getSnapshot} returns, or null if we
+     * don't have them yet.  In that case the details of every day in the list are loaded, and
+     * listeners are told once they're in.
+     */
+    public ForecastDetails getDetails(String locationSetting, long date) {
+        if (null == mSnapshot || !locationSetting.equals(mLocationSetting)) {
+            return null;
+        }
+        if (null == mDetails) {
+            if (!mLoadingDetails) {
+                loadDetails();
+            }
+            return null;
+        }
+        return mDetails.get(date);
+    }
+
+    /**
+     * Loads the details of the list's days ahead of anyone asking, so a detail view opened
+     * next binds all of it at once.  Every day comes with the one query, so this covers the
+     * selected day and its neighbours whichever they are.
+     */
+    public void prefetchDetails(String locationSetting) {
+        if (null != mSnapshot && locationSetting.equals(mLocationSetting)
+                && null == mDetails && !mLoadingDetails) {
+            loadDetails();
+        }
+    }
+
+    private void loadSnapshot(final String locationSetting) {
+        mLoadingLocation = locationSetting;
+        final int changes = mChanges;
+        new AsyncTask<Void, Void, ForecastSnapshot>() {
+            @Override
+            protected ForecastSnapshot doInBackground(Void... params) {
+                return ForecastLoader.query(mContext,
+                        WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
+                                locationSetting, System.currentTimeMillis()));
+            }
+
+            @Override
+            protected void onPostExecute(ForecastSnapshot snapshot) {
+                if (locationSetting.equals(mLoadingLocation)) {
+                    mLoadingLocation = null;
+                }
+                publish(locationSetting, snapshot);
+                if (changes != mChanges) {
+                    // The weather changed again while we were loading
+                    mStale = true;
+                    if (!mListeners.isEmpty()) {
+                        postReload();
+                    }
+                }
+            }
+        }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    private void loadDetails() {
+        final ForecastSnapshot snapshot = mSnapshot;
+        final String locationSetting = mLocationSetting;
+        if (snapshot.size() == 0) {
+            mDetails = new LongSparseArray<ForecastDetails>(0);
+            return;
+        }
+        mLoadingDetails = true;
+        new AsyncTask<Void, Void, LongSparseArray<ForecastDetails>>() {
+            @Override
+            protected LongSparseArray<ForecastDetails> doInBackground(Void... params) {
+                return queryDetails(mContext, locationSetting, snapshot.get(0).mDate);
+            }
+
+            @Override
+            protected void onPostExecute(LongSparseArray<ForecastDetails> details) {
+                mLoadingDetails = false;
+                if (snapshot != mSnapshot) {
+                    // Loaded for a list we've since replaced, which someone wants them for
+                    if (null == mDetails) {
+                        loadDetails();
+                    }
+                    return;
+                }
+                mDetails = details;
+                notifyListeners();
+            }
+        }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    /**
+     * Queries the details of every day of a location's forecast from {@code startDate} on.
+     */
+    static LongSparseArray<ForecastDetails> queryDetails(Context context, String locationSetting,
+                                                         long startDate) {
+        Cursor cursor = context.getContentResolver().query(
+                WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
+                        locationSetting, startDate),
+                ForecastDetails.DETAIL_COLUMNS,
+                null,
+                null,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        if (null == cursor) {
+            return new LongSparseArray<ForecastDetails>(0);
+        }
+        try {
+            LongSparseArray<ForecastDetails> details =
+                    new LongSparseArray<ForecastDetails>(cursor.getCount());
+            while (cursor.moveToNext()) {
+                ForecastDetails day = ForecastDetails.fromCursor(context, cursor);
+                // In date order, so this appends
+                details.append(day.mDate, day);
+            }
+            return details;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void notifyListeners() {
+        // Listeners may remove themselves as they're told
+        for (Listener listener : new ArrayList<Listener>(mListeners)) {
+            listener.onForecastChanged();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An immutable copy of the forecast list for one location, in date order.
+ *
+ * Each snapshot has its own generation, and may carry the {@link ForecastDiff} from the
+ * snapshot that was on screen when it was loaded.
+ */
+public class ForecastSnapshot {
+    private static final AtomicInteger sNextGeneration = new AtomicInteger();
+    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+
+    public static final ForecastSnapshot EMPTY =
+            new ForecastSnapshot(Collections.<ForecastItem>emptyList(), null, null);
+
+    private final int mGeneration = sNextGeneration.getAndIncrement();
+
+    private final List<ForecastItem> mItems;
+    // The rows' dates, in order, for finding a row by date
+    private final long[] mDates;
+    // Coordinates of the location, as strings ready to go into a geo: Uri
+    private final String mCoordLat;
+    private final String mCoordLong;
+    private final ForecastDiff mDiff;
+
+    public ForecastSnapshot(List<ForecastItem> items, String coordLat, String coordLong) {
+        this(Collections.unmodifiableList(items), coordLat, coordLong, null);
+    }
+
+    private ForecastSnapshot(List<ForecastItem> items, String coordLat, String coordLong,
+                             ForecastDiff diff) {
+        mItems = items;
+        mDates = new long[items.size()];
+        for (int i = 0; i < mDates.length; i++) {
+            mDates[i] = items.get(i).mDate;
+        }
+        mCoordLat = coordLat;
+        mCoordLong = coordLong;
+        mDiff = diff;
+    }
+
+    /**
+     * Returns a copy of this snapshot that carries its diff from {@code previous}.  Walks both
+     * lists, so it belongs on a background thread.
+     */
+    ForecastSnapshot withDiffFrom(ForecastSnapshot previous) {
+        if (previous == null) {
+            return this;
+        }
+        return new ForecastSnapshot(mItems, mCoordLat, mCoordLong,
+                ForecastDiff.compute(previous, this));
+    }
+
+    /**
+     * Maps every row of a forecast cursor to a {@link ForecastItem}.  The cursor is left open.
+     */
+    static ForecastSnapshot fromCursor(Context context, Cursor cursor) {
+        if (cursor == null || !cursor.moveToFirst()) {
+            return EMPTY;
+        }
+        String coordLat = cursor.getString(ForecastFragment.COL_COORD_LAT);
+        String coordLong = cursor.getString(ForecastFragment.COL_COORD_LONG);
+
+        boolean localGraphics = Utility.usingLocalGraphics(context);
+        ArrayList<ForecastItem> items = new ArrayList<ForecastItem>(cursor.getCount());
+        do {
+            items.add(ForecastItem.fromCursor(context, cursor, localGraphics));
+        } while (cursor.moveToNext());
+        return new ForecastSnapshot(items, coordLat, coordLong);
+    }
+
+    public int size() {
+        return mItems.size();
+    }
+
+    public ForecastItem get(int position) {
+        return mItems.get(position);
+    }
+
+    /**
+     * Finds the row for a date.  Rows are a day apart, so the first guess is almost always
+     * right; anything else falls back to a binary search.
+     *
+     * @return the row's position, or -1 if no row has that date
+     */
+    public int indexOfDate(long date) {
+        int count = mDates.length;
+        if (count == 0) {
+            return -1;
+        }
+        long guess = (date - mDates[0]) / DAY_IN_MILLIS;
+        if (guess >= 0 && guess < count) {
+            // The guess can be off by one around daylight saving changes
+            int position = (int) guess;
+            for (int i = Math.max(position - 1, 0); i <= Math.min(position + 1, count - 1); i++) {
+                if (mDates[i] == date) {
+                    return i;
+                }
+            }
+        }
+        int position = Arrays.binarySearch(mDates, date);
+        return (position >= 0) ? position : -1;
+    }
+
+    public List<ForecastItem> getItems() {
+        return mItems;
+    }
+
+    public String getCoordLat() {
+        return mCoordLat;
+    }
+
+    public String getCoordLong() {
+        return mCoordLong;
+    }
+
+    public int getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * @return the diff from the snapshot shown before this one was loaded, or null
+     */
+    public ForecastDiff getDiff() {
+        return mDiff;
+    }
+}
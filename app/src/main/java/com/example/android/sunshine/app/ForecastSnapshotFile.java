@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * Keeps the last forecast list we showed in a small binary file, so the list can be drawn from
+ * it on a cold start before the database has even been opened.
+ *
+ * The rows are stored already formatted.  A saved list is only used if it was formatted for
+ * the current location, units, art pack, locale and day, since otherwise its labels would be
+ * wrong; the loader replaces it with the real list as soon as it has one either way.
+ */
+public class ForecastSnapshotFile {
+    public static final String LOG_TAG = ForecastSnapshotFile.class.getSimpleName();
+
+    static final String FILE_NAME = "forecast_snapshot.bin";
+
+    private static final int MAGIC = 0x53554e53;
+    // Bump whenever the layout below changes; older files are then ignored
+    private static final int VERSION = 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Object sWriteLock = new Object();
+
+    /**
+     * Reads the saved list, if there is one that can be shown as it is.  Memory maps the file,
+     * so it is cheap enough for the main thread.
+     *
+     * @return the saved list, or null
+     */
+    public static ForecastSnapshot read(Context context) {
+        File file = getFile(context);
+        if (!file.exists()) {
+            return null;
+        }
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(file, "r");
+            MappedByteBuffer buffer = randomAccessFile.getChannel()
+                    .map(FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length());
+            return decode(context, buffer);
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            Log.w(LOG_TAG, "Ignoring unreadable forecast snapshot", e);
+            return null;
+        } finally {
+            if (randomAccessFile != null) {
+                try {
+                    randomAccessFile.close();
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Error closing forecast snapshot", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Saves a list formatted for the current preferences.  Replaces the file atomically, so a
+     * reader sees either the old list or the new one.  Does file I/O, so it belongs off the
+     * main thread.
+     */
+    public static void write(Context context, String locationSetting, ForecastSnapshot snapshot) {
+        File file = getFile(context);
+        synchronized (sWriteLock) {
+            if (snapshot.size() == 0) {
+                // Nothing worth showing early
+                file.delete();
+                return;
+            }
+            File temp = new File(file.getPath() + ".tmp");
+            FileOutputStream fileOutputStream = null;
+            try {
+                fileOutputStream = new FileOutputStream(temp);
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(fileOutputStream));
+                encode(context, locationSetting, snapshot, out);
+                out.flush();
+                fileOutputStream.getFD().sync();
+                out.close();
+                fileOutputStream = null;
+                if (!temp.renameTo(file)) {
+                    Log.w(LOG_TAG, "Couldn't replace forecast snapshot");
+                    temp.delete();
+                }
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Error writing forecast snapshot", e);
+                temp.delete();
+            } finally {
+                if (fileOutputStream != null) {
+                    try {
+                        fileOutputStream.close();
+                    } catch (IOException e) {
+                        Log.e(LOG_TAG, "Error closing forecast snapshot", e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reloads the forecast for the preferred location from the database and saves it.  Called
+     * by the sync adapter once new weather is in.
+     */
+    public static void update(Context context) {
+        String locationSetting = Utility.getPreferredLocation(context);
+        ForecastSnapshot snapshot = ForecastLoader.query(context,
+                WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
+                        locationSetting, System.currentTimeMillis()));
+        write(context, locationSetting, snapshot);
+    }
+
+    static File getFile(Context context) {
+        return new File(context.getFilesDir(), FILE_NAME);
+    }
+
+    private static void encode(Context context, String locationSetting, ForecastSnapshot snapshot,
+                               DataOutputStream out) throws IOException {
+        WeatherPreferences prefs = WeatherPreferences.get(context);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        // What the rows were formatted for
+        out.writeInt(getToday(context));
+        writeString(out, locationSetting);
+        writeString(out, prefs.mLocale.toString());
+        out.writeBoolean(prefs.mMetric);
+        writeString(out, prefs.mArtPack);
+
+        writeString(out, snapshot.getCoordLat());
+        writeString(out, snapshot.getCoordLong());
+        out.writeInt(snapshot.size());
+        for (ForecastItem item : snapshot.getItems()) {
+            out.writeLong(item.mDate);
+            out.writeInt(item.mWeatherId);
+            writeString(out, item.mDayText);
+            writeString(out, item.mLongDayText);
+            writeString(out, item.mArtUrl);
+            writeString(out, item.mDescription);
+            writeString(out, item.mDescriptionA11y);
+            writeString(out, item.mHighText);
+            writeString(out, item.mHighA11y);
+            writeString(out, item.mLowText);
+            writeString(out, item.mLowA11y);
+        }
+    }
+
+    private static ForecastSnapshot decode(Context context, ByteBuffer in) {
+        if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+            return null;
+        }
+        WeatherPreferences prefs = WeatherPreferences.get(context);
+        if (in.getInt() != getToday(context)
+                || !prefs.mLocation.equals(readString(in))
+                || !prefs.mLocale.toString().equals(readString(in))
+                || prefs.mMetric != (in.get() != 0)
+                || !prefs.mArtPack.equals(readString(in))) {
+            return null;
+        }
+
+        String coordLat = readString(in);
+        String coordLong = readString(in);
+        int count = in.getInt();
+        if (count <= 0) {
+            return null;
+        }
+        ArrayList<ForecastItem> items = new ArrayList<ForecastItem>(count);
+        for (int i = 0; i < count; i++) {
+            long date = in.getLong();
+            int weatherId = in.getInt();
+            // Resource ids can change between builds, so those are looked up again
+            WeatherCondition condition = WeatherCondition.get(weatherId);
+            items.add(new ForecastItem(date, weatherId, readString(in), readString(in),
+                    condition.mIconResource, condition.mArtResource, readString(in),
+                    readString(in), readString(in), readString(in), readString(in),
+                    readString(in), readString(in)));
+        }
+        return new ForecastSnapshot(items, coordLat, coordLong);
+    }
+
+    // The day labels are relative to today, so they go stale at midnight
+    private static int getToday(Context context) {
+        return DayLabels.getInstance(context).getJulianDay(System.currentTimeMillis());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.remaining()) {
+            throw new IllegalArgumentException(String.format(Locale.US,
+                    "String of %d bytes with %d left", length, in.remaining()));
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
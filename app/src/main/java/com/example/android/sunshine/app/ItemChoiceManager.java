@@ -17,8 +17,6 @@ package com.example.android.sunshine.app;
 
 import android.os.Build;
 import android.os.Bundle;
-import android.os.Parcel;
-import android.os.Parcelable;
 import android.support.v4.util.LongSparseArray;
 import android.support.v4.view.ViewCompat;
 import android.support.v7.widget.RecyclerView;
@@ -28,21 +26,53 @@ import android.widget.AbsListView;
 import android.widget.Checkable;
 
 /**
- * The ItemChoiceManager class keeps track of which positions have been selected.  Note that it
- * doesn't take advantage of new adapter features to track changes in the underlying data.
+ * The ItemChoiceManager class keeps track of which positions have been selected.  With an
+ * adapter that has stable ids it follows the adapter's range notifications, so a selection stays
+ * on the same item as rows are inserted and removed around it.
  */
 public class ItemChoiceManager {
     private final String LOG_TAG = MainActivity.class.getSimpleName();
-    private final String SELECTED_ITEMS_KEY = "SIK";
+    private final String CHECKED_POSITIONS_KEY = "SIK_positions";
+    private final String CHECKED_IDS_KEY = "SIK_ids";
+    private final String CHECKED_ID_POSITIONS_KEY = "SIK_id_positions";
     private int mChoiceMode;
 
+    /**
+     * Implemented by adapters with stable ids that can find an id's position without walking
+     * all of their items.
+     */
+    public interface PositionLookup {
+        /**
+         * @return the position of the item with this id, or RecyclerView.NO_POSITION
+         */
+        int getPositionForItemId(long id);
+    }
+
     private RecyclerView.Adapter mAdapter;
     private RecyclerView.AdapterDataObserver mAdapterDataObserver = new RecyclerView.AdapterDataObserver() {
         @Override
         public void onChanged() {
             super.onChanged();
             if (mAdapter != null && mAdapter.hasStableIds())
-                confirmCheckedPositionsById(mAdapter.getItemCount());
+                confirmCheckedPositionsById();
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            if (mAdapter != null && mAdapter.hasStableIds())
+                offsetCheckedPositions(positionStart, 0, itemCount);
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            if (mAdapter != null && mAdapter.hasStableIds())
+                offsetCheckedPositions(positionStart, itemCount, -itemCount);
+        }
+
+        @Override
+        public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+            if (mAdapter != null && mAdapter.hasStableIds())
+                confirmCheckedPositionsById();
         }
     };
 
@@ -53,15 +83,9 @@ public class ItemChoiceManager {
 
     public ItemChoiceManager(RecyclerView.Adapter adapter) {
         mAdapter = adapter;
+        mAdapter.registerAdapterDataObserver(mAdapterDataObserver);
     }
 
-    /**
-     * How many positions in either direction we will search to try to
-     * find a checked item with a stable ID that moved position across
-     * a data set change. If the item isn't found it will be unselected.
-     */
-    private static final int CHECK_POSITION_SEARCH_DISTANCE = 20;
-
     /**
      * Running state of which positions are currently checked
      */
@@ -78,7 +102,6 @@ public class ItemChoiceManager {
         if (mChoiceMode == AbsListView.CHOICE_MODE_NONE)
             return;
 
-        int checkedItemCount = mCheckStates.size();
         int position = vh.getAdapterPosition();
 
         if (position == RecyclerView.NO_POSITION) {
@@ -89,26 +112,12 @@ public class ItemChoiceManager {
         switch (mChoiceMode) {
             case AbsListView.CHOICE_MODE_NONE:
                 break;
-            case AbsListView.CHOICE_MODE_SINGLE: {
-                boolean checked = mCheckStates.get(position, false);
-                if (!checked) {
-                    for (int i = 0; i < checkedItemCount; i++) {
-                        mAdapter.notifyItemChanged(mCheckStates.keyAt(i));
-                    }
-                    mCheckStates.clear();
-                    mCheckStates.put(position, true);
-                    mCheckedIdStates.clear();
-                    mCheckedIdStates.put(mAdapter.getItemId(position), position);
-                }
-                // We directly call onBindViewHolder here because notifying that an item has
-                // changed on an item that has the focus causes it to lose focus, which makes
-                // keyboard navigation a bit annoying
-                mAdapter.onBindViewHolder(vh, position);
-                break;
-            }
+            case AbsListView.CHOICE_MODE_SINGLE:
             case AbsListView.CHOICE_MODE_MULTIPLE: {
                 boolean checked = mCheckStates.get(position, false);
-                mCheckStates.put(position, !checked);
+                if (mChoiceMode == AbsListView.CHOICE_MODE_MULTIPLE || !checked) {
+                    updateCheckState(position, !checked);
+                }
                 // We directly call onBindViewHolder here because notifying that an item has
                 // changed on an item that has the focus causes it to lose focus, which makes
                 // keyboard navigation a bit annoying
@@ -121,6 +130,49 @@ public class ItemChoiceManager {
         }
     }
 
+    /**
+     * Sets the checked state of a position, and rebinds every row whose state changed.  In
+     * single choice mode checking a position unchecks the one that was checked before.
+     *
+     * @param position The item whose checked state is to be changed
+     * @param checked  The new checked state for the item
+     */
+    public void setItemChecked(int position, boolean checked) {
+        if (mChoiceMode == AbsListView.CHOICE_MODE_NONE ||
+                mCheckStates.get(position, false) == checked) {
+            return;
+        }
+        updateCheckState(position, checked);
+        mAdapter.notifyItemChanged(position);
+    }
+
+    // Records the new state, rebinding any other rows it unchecks
+    private void updateCheckState(int position, boolean checked) {
+        if (mChoiceMode == AbsListView.CHOICE_MODE_SINGLE && checked) {
+            for (int i = 0; i < mCheckStates.size(); i++) {
+                if (mCheckStates.keyAt(i) != position) {
+                    mAdapter.notifyItemChanged(mCheckStates.keyAt(i));
+                }
+            }
+            mCheckStates.clear();
+            mCheckedIdStates.clear();
+        }
+        if (checked) {
+            mCheckStates.put(position, true);
+            mCheckedIdStates.put(mAdapter.getItemId(position), position);
+        } else {
+            mCheckStates.delete(position);
+            mCheckedIdStates.delete(mAdapter.getItemId(position));
+        }
+    }
+
+    /**
+     * @return how many items are checked
+     */
+    public int getCheckedItemCount() {
+        return mCheckStates.size();
+    }
+
     /**
      * Defines the choice behavior for the RecyclerView. By default, RecyclerViewChoiceMode does
      * not have any choice behavior (AbsListView.CHOICE_MODE_NONE). By setting the choiceMode to
@@ -154,38 +206,58 @@ public class ItemChoiceManager {
         mCheckedIdStates.clear();
     }
 
-    void confirmCheckedPositionsById(int oldItemCount) {
-        // Clear out the positional check states, we'll rebuild it below from IDs.
-        mCheckStates.clear();
-
-        for (int checkedIndex = 0; checkedIndex < mCheckedIdStates.size(); checkedIndex++) {
-            final long id = mCheckedIdStates.keyAt(checkedIndex);
-            final int lastPos = mCheckedIdStates.valueAt(checkedIndex);
-
-            final long lastPosId = mAdapter.getItemId(lastPos);
-            if (id != lastPosId) {
-                // Look around to see if the ID is nearby. If not, uncheck it.
-                final int start = Math.max(0, lastPos - CHECK_POSITION_SEARCH_DISTANCE);
-                final int end = Math.min(lastPos + CHECK_POSITION_SEARCH_DISTANCE, oldItemCount);
-                boolean found = false;
-                for (int searchPos = start; searchPos < end; searchPos++) {
-                    final long searchId = mAdapter.getItemId(searchPos);
-                    if (id == searchId) {
-                        found = true;
-                        mCheckStates.put(searchPos, true);
-                        mCheckedIdStates.setValueAt(checkedIndex, searchPos);
-                        break;
-                    }
+    /**
+     * Finds the checked ids again after the whole data set changed, by asking the adapter if it
+     * is a {@link PositionLookup} and otherwise in a single pass over it.  Ids that are no
+     * longer there are unchecked.
+     */
+    void confirmCheckedPositionsById() {
+        LongSparseArray<Integer> found = new LongSparseArray<Integer>(mCheckedIdStates.size());
+        if (mAdapter instanceof PositionLookup) {
+            PositionLookup lookup = (PositionLookup) mAdapter;
+            for (int i = 0; i < mCheckedIdStates.size(); i++) {
+                final long id = mCheckedIdStates.keyAt(i);
+                final int position = lookup.getPositionForItemId(id);
+                if (position != RecyclerView.NO_POSITION) {
+                    found.put(id, position);
                 }
-
-                if (!found) {
-                    mCheckedIdStates.delete(id);
-                    checkedIndex--;
+            }
+        } else if (mCheckedIdStates.size() > 0) {
+            final int count = mAdapter.getItemCount();
+            for (int position = 0; position < count; position++) {
+                final long id = mAdapter.getItemId(position);
+                if (mCheckedIdStates.get(id) != null) {
+                    found.put(id, position);
+                    if (found.size() == mCheckedIdStates.size()) break;
                 }
+            }
+        }
+        mCheckedIdStates = found;
+        rebuildCheckStates();
+    }
+
+    /**
+     * Follows a range insert or removal: checked items inside {@code removedCount} positions
+     * from {@code positionStart} are dropped and the ones after it move by {@code offset}.
+     */
+    void offsetCheckedPositions(int positionStart, int removedCount, int offset) {
+        for (int i = mCheckedIdStates.size() - 1; i >= 0; i--) {
+            final int position = mCheckedIdStates.valueAt(i);
+            if (position < positionStart) continue;
+            if (position < positionStart + removedCount) {
+                mCheckedIdStates.removeAt(i);
             } else {
-                mCheckStates.put(lastPos, true);
+                mCheckedIdStates.setValueAt(i, position + offset);
             }
         }
+        rebuildCheckStates();
+    }
+
+    private void rebuildCheckStates() {
+        mCheckStates.clear();
+        for (int i = 0; i < mCheckedIdStates.size(); i++) {
+            mCheckStates.put(mCheckedIdStates.valueAt(i), true);
+        }
     }
 
     public void onBindViewHolder(RecyclerView.ViewHolder vh, int position) {
@@ -197,34 +269,38 @@ public class ItemChoiceManager {
     }
 
     public void onRestoreInstanceState(Bundle savedInstanceState) {
-        byte[] states = savedInstanceState.getByteArray(SELECTED_ITEMS_KEY);
-        if ( null != states ) {
-            Parcel inParcel = Parcel.obtain();
-            inParcel.unmarshall(states, 0, states.length);
-            inParcel.setDataPosition(0);
-            mCheckStates = inParcel.readSparseBooleanArray();
-            final int numStates = inParcel.readInt();
-            mCheckedIdStates.clear();
-            for (int i=0; i<numStates; i++) {
-                final long key = inParcel.readLong();
-                final int value = inParcel.readInt();
-                mCheckedIdStates.put(key, value);
-            }
+        int[] positions = savedInstanceState.getIntArray(CHECKED_POSITIONS_KEY);
+        long[] ids = savedInstanceState.getLongArray(CHECKED_IDS_KEY);
+        int[] idPositions = savedInstanceState.getIntArray(CHECKED_ID_POSITIONS_KEY);
+        if ( null == positions || null == ids || null == idPositions ) {
+            return;
+        }
+        mCheckStates.clear();
+        for (int position : positions) {
+            mCheckStates.put(position, true);
+        }
+        mCheckedIdStates.clear();
+        for (int i = 0; i < ids.length; i++) {
+            mCheckedIdStates.put(ids[i], idPositions[i]);
         }
     }
 
     public void onSaveInstanceState(Bundle outState) {
-        Parcel outParcel = Parcel.obtain();
-        outParcel.writeSparseBooleanArray(mCheckStates);
+        // Only checked positions are ever stored, so the keys are all we need
+        int[] positions = new int[mCheckStates.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = mCheckStates.keyAt(i);
+        }
         final int numStates = mCheckedIdStates.size();
-        outParcel.writeInt(numStates);
-        for (int i=0; i<numStates; i++) {
-            outParcel.writeLong(mCheckedIdStates.keyAt(i));
-            outParcel.writeInt(mCheckedIdStates.valueAt(i));
-        }
-        byte[] states = outParcel.marshall();
-        outState.putByteArray(SELECTED_ITEMS_KEY, states);
-        outParcel.recycle();
+        long[] ids = new long[numStates];
+        int[] idPositions = new int[numStates];
+        for (int i = 0; i < numStates; i++) {
+            ids[i] = mCheckedIdStates.keyAt(i);
+            idPositions[i] = mCheckedIdStates.valueAt(i);
+        }
+        outState.putIntArray(CHECKED_POSITIONS_KEY, positions);
+        outState.putLongArray(CHECKED_IDS_KEY, ids);
+        outState.putIntArray(CHECKED_ID_POSITIONS_KEY, idPositions);
     }
 
     public int getSelectedItemPosition() {
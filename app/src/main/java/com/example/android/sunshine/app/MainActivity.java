@@ -15,6 +15,8 @@
  */
 package com.example.android.sunshine.app;
 
+import android.content.Context;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.net.Uri;
@@ -23,6 +25,7 @@ import android.preference.PreferenceManager;
 import android.support.v4.app.ActivityCompat;
 import android.support.v4.app.ActivityOptionsCompat;
 import android.support.v4.util.Pair;
+import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.Toolbar;
 import android.util.Log;
@@ -32,6 +35,10 @@ import android.view.View;
 
 import com.example.android.sunshine.app.data.WeatherContract;
 import com.example.android.sunshine.app.gcm.RegistrationIntentService;
+import com.example.android.sunshine.app.perf.DetailLatencyTimer;
+import com.example.android.sunshine.app.perf.FrameMonitor;
+import com.example.android.sunshine.app.startup.StartupOrchestrator;
+import com.example.android.sunshine.app.startup.StartupTimer;
 import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.GoogleApiAvailability;
@@ -43,11 +50,18 @@ public class MainActivity extends AppCompatActivity implements ForecastFragment.
     private final static int PLAY_SERVICES_RESOLUTION_REQUEST = 9000;
     public static final String SENT_TOKEN_TO_SERVER = "sentTokenToServer";
 
+    private static final String STEP_SYNC_ACCOUNT = "syncAccount";
+    private static final String STEP_PLAY_SERVICES = "playServices";
+    private static final String STEP_GCM_REGISTRATION = "gcmRegistration";
+
     private boolean mTwoPane;
     private String mLocation;
+    private StartupOrchestrator mStartup;
+    private volatile boolean mPlayServicesAvailable;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        StartupTimer.onActivityCreate();
         super.onCreate(savedInstanceState);
         mLocation = Utility.getPreferredLocation(this);
         Uri contentUri = getIntent() != null ? getIntent().getData() : null;
@@ -89,22 +103,54 @@ public class MainActivity extends AppCompatActivity implements ForecastFragment.
                     WeatherContract.WeatherEntry.getDateFromUri(contentUri));
         }
 
-        SunshineSyncAdapter.initializeSyncAdapter(this);
+        // None of this is needed to show the forecast we already have, so it waits until the
+        // first frame is out
+        final Context appContext = getApplicationContext();
+        mStartup = new StartupOrchestrator()
+                .addStep(STEP_SYNC_ACCOUNT, StartupOrchestrator.THREAD_BACKGROUND, new Runnable() {
+                    @Override
+                    public void run() {
+                        // Account lookups, and on first run creating the account and its sync
+                        SunshineSyncAdapter.initializeSyncAdapter(appContext);
+                    }
+                })
+                .addStep(STEP_PLAY_SERVICES, StartupOrchestrator.THREAD_MAIN, new Runnable() {
+                    @Override
+                    public void run() {
+                        // May show a dialog, so it stays on the main thread
+                        mPlayServicesAvailable = checkPlayServices();
+                    }
+                })
+                .addStep(STEP_GCM_REGISTRATION, StartupOrchestrator.THREAD_BACKGROUND, new Runnable() {
+                    @Override
+                    public void run() {
+                        registerWithGcm(appContext);
+                    }
+                }, STEP_PLAY_SERVICES);
+        mStartup.startAfterFirstDraw(getWindow().getDecorView());
+    }
+
+    @Override
+    protected void onDestroy() {
+        mStartup.cancel();
+        super.onDestroy();
+    }
 
+    private void registerWithGcm(Context context) {
         // If Google Play Services is up to date, we'll want to register GCM. If it is not, we'll
         // skip the registration and this device will not receive any downstream messages from
         // our fake server. Because weather alerts are not a core feature of the app, this should
         // not affect the behavior of the app, from a user perspective.
-        if (checkPlayServices()) {
+        if (mPlayServicesAvailable) {
             // Because this is the initial creation of the app, we'll want to be certain we have
             // a token. If we do not, then we will start the IntentService that will register this
             // application with GCM.
             SharedPreferences sharedPreferences =
-                    PreferenceManager.getDefaultSharedPreferences(this);
+                    PreferenceManager.getDefaultSharedPreferences(context);
             boolean sentToken = sharedPreferences.getBoolean(SENT_TOKEN_TO_SERVER, false);
             if (!sentToken) {
-                Intent intent = new Intent(this, RegistrationIntentService.class);
-                startService(intent);
+                Intent intent = new Intent(context, RegistrationIntentService.class);
+                context.startService(intent);
             }
         }
     }
@@ -113,6 +159,7 @@ public class MainActivity extends AppCompatActivity implements ForecastFragment.
     public boolean onCreateOptionsMenu(Menu menu) {
         // Inflate the menu; this adds items to the action bar if it is present.
         getMenuInflater().inflate(R.menu.main, menu);
+        menu.findItem(R.id.action_frame_stats).setVisible(BuildConfig.DEBUG);
         return true;
     }
 
@@ -128,10 +175,39 @@ public class MainActivity extends AppCompatActivity implements ForecastFragment.
             startActivity(new Intent(this, SettingsActivity.class));
             return true;
         }
+        if (id == R.id.action_frame_stats) {
+            showFrameStats();
+            return true;
+        }
 
         return super.onOptionsItemSelected(item);
     }
 
+    private void showFrameStats() {
+        final String stats = FrameMonitor.dump();
+        Log.i(FrameMonitor.LOG_TAG, stats);
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.action_frame_stats)
+                .setMessage(stats)
+                .setPositiveButton(R.string.action_share, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        Intent shareIntent = new Intent(Intent.ACTION_SEND)
+                                .setType("text/plain")
+                                .putExtra(Intent.EXTRA_TEXT, stats);
+                        startActivity(Intent.createChooser(shareIntent,
+                                getString(R.string.action_frame_stats)));
+                    }
+                })
+                .setNeutralButton(R.string.frame_stats_reset, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        FrameMonitor.reset();
+                    }
+                })
+                .show();
+    }
+
     @Override
     protected void onResume() {
         super.onResume();
@@ -152,6 +228,7 @@ public class MainActivity extends AppCompatActivity implements ForecastFragment.
 
     @Override
     public void onItemSelected(Uri contentUri, ForecastAdapter.ForecastAdapterViewHolder vh) {
+        DetailLatencyTimer.onDaySelected(WeatherContract.WeatherEntry.getDateFromUri(contentUri));
         if (mTwoPane) {
             // In two-pane mode, show the detail view in this activity by
             // adding or replacing the detail fragment using a
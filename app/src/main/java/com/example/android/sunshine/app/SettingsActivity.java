@@ -153,6 +153,8 @@ public class SettingsActivity extends PreferenceActivity
     // start our synchronization here
     @Override
     public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+        // Listeners run in no particular order, so make sure the cached preferences are current
+        WeatherPreferences.refresh(this);
         if ( key.equals(getString(R.string.pref_location_key)) ) {
             // we've changed the location
             // Wipe out any potential PlacePicker latlng values so that we can use this text entry.
@@ -160,6 +162,7 @@ public class SettingsActivity extends PreferenceActivity
             editor.remove(getString(R.string.pref_location_latitude));
             editor.remove(getString(R.string.pref_location_longitude));
             editor.commit();
+            WeatherPreferences.refresh(this);
 
             // Remove attributions for our any PlacePicker locations.
             if (mAttribution != null) {
@@ -176,6 +179,12 @@ public class SettingsActivity extends PreferenceActivity
             Preference locationPreference = findPreference(getString(R.string.pref_location_key));
             bindPreferenceSummaryToValue(locationPreference);
         } else if ( key.equals(getString(R.string.pref_art_pack_key)) ) {
+            // Start downloading the new pack while we are still in settings, rather than
+            // letting every row of the list ask for its image at once when we go back
+            WeatherPreferences prefs = WeatherPreferences.get(this);
+            if ( !prefs.mLocalGraphics ) {
+                ArtPrefetcher.prefetchArtPack(this, prefs.mArtPack);
+            }
             // art pack have changed. update lists of weather entries accordingly
             getContentResolver().notifyChange(WeatherContract.WeatherEntry.CONTENT_URI, null);
         }
@@ -216,6 +225,7 @@ public class SettingsActivity extends PreferenceActivity
                 editor.putFloat(getString(R.string.pref_location_longitude),
                         (float) latLong.longitude);
                 editor.commit();
+                WeatherPreferences.refresh(this);
 
                 // Tell the SyncAdapter that we've changed the location, so that we can update
                 // our UI with new values. We need to do this manually because we are responding
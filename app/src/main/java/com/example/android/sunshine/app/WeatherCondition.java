@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Everything Sunshine shows for an OpenWeatherMap condition code, looked up once.
+ *
+ * Conditions live in a table indexed directly by code, so callers that need the icon, the art
+ * and the description of a row get all of them from a single array read.
+ *
+ * Based on weather code data found at:
+ * http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
+ */
+public class WeatherCondition {
+    // OpenWeatherMap codes are three digits
+    static final int MAX_CODE = 999;
+
+    // Art pack file names, see the pref_art_pack_* URL formats
+    private static final String[] ART_SLUGS = {
+            "storm", "light_rain", "rain", "snow", "fog", "clear", "light_clouds", "clouds"
+    };
+    private static final int STORM = 0;
+    private static final int LIGHT_RAIN = 1;
+    private static final int RAIN = 2;
+    private static final int SNOW = 3;
+    private static final int FOG = 4;
+    private static final int CLEAR = 5;
+    private static final int LIGHT_CLOUDS = 6;
+    private static final int CLOUDS = 7;
+    private static final int NO_ART = -1;
+
+    private static final String[] IMAGE_URLS = {
+            "http://upload.wikimedia.org/wikipedia/commons/2/28/Thunderstorm_in_Annemasse,_France.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/a/a0/Rain_on_leaf_504605006.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/6/6c/Rain-on-Thassos.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/b/b8/Fresh_snow.JPG",
+            "http://upload.wikimedia.org/wikipedia/commons/e/e6/Westminster_fog_-_London_-_UK.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/7/7e/A_few_trees_and_the_sun_(6009964513).jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/e/e7/Cloudy_Blue_Sky_(5031259890).jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/5/54/Cloudy_hills_in_Elis,_Greece_2.jpg"
+    };
+    // 781 (tornado) uses the storm art but has its own picture
+    private static final String IMAGE_URL_TORNADO =
+            "http://upload.wikimedia.org/wikipedia/commons/d/dc/Raised_dust_ahead_of_a_severe_thunderstorm_1.jpg";
+
+    private static final int[] ICONS = {
+            R.drawable.ic_storm, R.drawable.ic_light_rain, R.drawable.ic_rain, R.drawable.ic_snow,
+            R.drawable.ic_fog, R.drawable.ic_clear, R.drawable.ic_light_clouds, R.drawable.ic_cloudy
+    };
+    private static final int[] ARTS = {
+            R.drawable.art_storm, R.drawable.art_light_rain, R.drawable.art_rain, R.drawable.art_snow,
+            R.drawable.art_fog, R.drawable.art_clear, R.drawable.art_light_clouds, R.drawable.art_clouds
+    };
+
+    // Codes with their own description
+    private static final int[] NAMED_CODES = {
+            500, 501, 502, 503, 504, 511, 520, 531,
+            600, 601, 602, 611, 612, 615, 616, 620, 621, 622,
+            701, 711, 721, 731, 741, 751, 761, 762, 771, 781,
+            800, 801, 802, 803, 804,
+            900, 901, 902, 903, 904, 905, 906,
+            951, 952, 953, 954, 955, 956, 957, 958, 959, 960, 961, 962
+    };
+    private static final int[] NAMED_STRINGS = {
+            R.string.condition_500, R.string.condition_501, R.string.condition_502,
+            R.string.condition_503, R.string.condition_504, R.string.condition_511,
+            R.string.condition_520, R.string.condition_531,
+            R.string.condition_600, R.string.condition_601, R.string.condition_602,
+            R.string.condition_611, R.string.condition_612, R.string.condition_615,
+            R.string.condition_616, R.string.condition_620, R.string.condition_621,
+            R.string.condition_622,
+            R.string.condition_701, R.string.condition_711, R.string.condition_721,
+            R.string.condition_731, R.string.condition_741, R.string.condition_751,
+            R.string.condition_761, R.string.condition_762, R.string.condition_771,
+            R.string.condition_781,
+            R.string.condition_800, R.string.condition_801, R.string.condition_802,
+            R.string.condition_803, R.string.condition_804,
+            R.string.condition_900, R.string.condition_901, R.string.condition_902,
+            R.string.condition_903, R.string.condition_904, R.string.condition_905,
+            R.string.condition_906,
+            R.string.condition_951, R.string.condition_952, R.string.condition_953,
+            R.string.condition_954, R.string.condition_955, R.string.condition_956,
+            R.string.condition_957, R.string.condition_958, R.string.condition_959,
+            R.string.condition_960, R.string.condition_961, R.string.condition_962
+    };
+
+    private static final WeatherCondition UNKNOWN = new WeatherCondition(NO_ART, 0, null);
+    private static final WeatherCondition[] sConditions = new WeatherCondition[MAX_CODE + 1];
+
+    // Art URLs for the last art pack asked for, indexed like ART_SLUGS
+    private static volatile ArtUrls sArtUrls;
+
+    static {
+        int[] art = new int[MAX_CODE + 1];
+        int[] strings = new int[MAX_CODE + 1];
+        String[] images = new String[MAX_CODE + 1];
+        Arrays.fill(art, NO_ART);
+
+        fillArt(art, 200, 232, STORM);
+        fillArt(art, 300, 321, LIGHT_RAIN);
+        fillArt(art, 500, 504, RAIN);
+        fillArt(art, 511, 511, SNOW);
+        fillArt(art, 520, 531, RAIN);
+        fillArt(art, 600, 622, SNOW);
+        // 761 (dust) has always shown as fog: it falls in the 701-761 range before its own case
+        fillArt(art, 701, 761, FOG);
+        fillArt(art, 781, 781, STORM);
+        fillArt(art, 800, 800, CLEAR);
+        fillArt(art, 801, 801, LIGHT_CLOUDS);
+        fillArt(art, 802, 804, CLOUDS);
+        for (int code = 0; code <= MAX_CODE; code++) {
+            if (art[code] != NO_ART) {
+                images[code] = IMAGE_URLS[art[code]];
+            }
+        }
+        images[781] = IMAGE_URL_TORNADO;
+
+        for (int code = 200; code <= 232; code++) strings[code] = R.string.condition_2xx;
+        for (int code = 300; code <= 321; code++) strings[code] = R.string.condition_3xx;
+        for (int i = 0; i < NAMED_CODES.length; i++) {
+            strings[NAMED_CODES[i]] = NAMED_STRINGS[i];
+        }
+
+        for (int code = 0; code <= MAX_CODE; code++) {
+            if (art[code] == NO_ART && strings[code] == 0) {
+                sConditions[code] = UNKNOWN;
+            } else {
+                sConditions[code] = new WeatherCondition(art[code], strings[code], images[code]);
+            }
+        }
+    }
+
+    private static void fillArt(int[] art, int first, int last, int artIndex) {
+        for (int code = first; code <= last; code++) {
+            art[code] = artIndex;
+        }
+    }
+
+    private final int mArtIndex;
+    // -1 when there is no icon or art for the condition
+    public final int mIconResource;
+    public final int mArtResource;
+    // 0 when the condition has no description of its own
+    public final int mStringResource;
+    // The art pack file name, or null
+    public final String mArtSlug;
+    public final String mImageUrl;
+
+    private WeatherCondition(int artIndex, int stringResource, String imageUrl) {
+        mArtIndex = artIndex;
+        mIconResource = (artIndex == NO_ART) ? -1 : ICONS[artIndex];
+        mArtResource = (artIndex == NO_ART) ? -1 : ARTS[artIndex];
+        mArtSlug = (artIndex == NO_ART) ? null : ART_SLUGS[artIndex];
+        mStringResource = stringResource;
+        mImageUrl = imageUrl;
+    }
+
+    /**
+     * @param weatherId from OpenWeatherMap API response
+     * @return the condition for the code; never null
+     */
+    public static WeatherCondition get(int weatherId) {
+        if (weatherId < 0 || weatherId > MAX_CODE) {
+            return UNKNOWN;
+        }
+        return sConditions[weatherId];
+    }
+
+    /**
+     * @return the localized description, or the "unknown" text with the code filled in
+     */
+    public String getDescription(Context context, int weatherId) {
+        if (mStringResource == 0) {
+            return context.getString(R.string.condition_unknown, weatherId);
+        }
+        return context.getString(mStringResource);
+    }
+
+    /**
+     * @param artPack one of the pref_art_pack_* URL formats
+     * @return the URL of this condition's art in that pack, or null if it has none
+     */
+    public String getArtUrl(String artPack) {
+        if (mArtIndex == NO_ART) {
+            return null;
+        }
+        return getArtUrls(artPack).mUrls[mArtIndex];
+    }
+
+    /**
+     * @param artPack one of the pref_art_pack_* URL formats
+     * @return the URL of every image in that pack
+     */
+    public static String[] getAllArtUrls(String artPack) {
+        return getArtUrls(artPack).mUrls.clone();
+    }
+
+    private static ArtUrls getArtUrls(String artPack) {
+        ArtUrls urls = sArtUrls;
+        if (urls == null || !urls.mArtPack.equals(artPack)) {
+            urls = new ArtUrls(artPack);
+            sArtUrls = urls;
+        }
+        return urls;
+    }
+
+    private static class ArtUrls {
+        final String mArtPack;
+        final String[] mUrls = new String[ART_SLUGS.length];
+
+        ArtUrls(String artPack) {
+            mArtPack = artPack;
+            for (int i = 0; i < ART_SLUGS.length; i++) {
+                mUrls[i] = String.format(Locale.US, artPack, ART_SLUGS[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
+
+import java.util.Locale;
+
+/**
+ * An immutable snapshot of the preferences {@link Utility} reads on its hot paths.
+ *
+ * The current snapshot is rebuilt whenever the shared preferences change and swapped in as a
+ * whole, so readers on any thread see either all of the old values or all of the new ones.
+ * Code that writes one of these preferences and reads it back right away should call
+ * {@link #refresh(Context)} after the write, since the change listener may run later on the
+ * main thread.
+ */
+public class WeatherPreferences {
+    private static volatile WeatherPreferences sCurrent;
+
+    // SharedPreferences only holds its listeners weakly, so we keep ours here
+    private static SharedPreferences.OnSharedPreferenceChangeListener sListener;
+
+    public final String mLocation;
+    public final boolean mMetric;
+    public final boolean mLatLonAvailable;
+    public final float mLatitude;
+    public final float mLongitude;
+    // The art pack's URL format, and whether it is the one we also ship as local graphics
+    public final String mArtPack;
+    public final boolean mLocalGraphics;
+    @SunshineSyncAdapter.LocationStatus
+    public final int mLocationStatus;
+    // R.string.format_temperature, which depends on the locale below
+    public final String mTemperatureFormat;
+    public final Locale mLocale;
+
+    @SuppressWarnings("ResourceType")
+    private WeatherPreferences(Context context, SharedPreferences prefs) {
+        mLocation = prefs.getString(context.getString(R.string.pref_location_key),
+                context.getString(R.string.pref_location_default));
+        mMetric = prefs.getString(context.getString(R.string.pref_units_key),
+                context.getString(R.string.pref_units_metric))
+                .equals(context.getString(R.string.pref_units_metric));
+
+        String latitudeKey = context.getString(R.string.pref_location_latitude);
+        String longitudeKey = context.getString(R.string.pref_location_longitude);
+        mLatLonAvailable = prefs.contains(latitudeKey) && prefs.contains(longitudeKey);
+        mLatitude = prefs.getFloat(latitudeKey, Utility.DEFAULT_LATLONG);
+        mLongitude = prefs.getFloat(longitudeKey, Utility.DEFAULT_LATLONG);
+
+        String sunshineArtPack = context.getString(R.string.pref_art_pack_sunshine);
+        mArtPack = prefs.getString(context.getString(R.string.pref_art_pack_key), sunshineArtPack);
+        mLocalGraphics = mArtPack.equals(sunshineArtPack);
+
+        mLocationStatus = prefs.getInt(context.getString(R.string.pref_location_status_key),
+                SunshineSyncAdapter.LOCATION_STATUS_UNKNOWN);
+
+        mTemperatureFormat = context.getString(R.string.format_temperature);
+        mLocale = Locale.getDefault();
+    }
+
+    /**
+     * Returns the current snapshot, building it on first use or after a locale change.
+     */
+    public static WeatherPreferences get(Context context) {
+        WeatherPreferences current = sCurrent;
+        if (current == null || !current.mLocale.equals(Locale.getDefault())) {
+            current = refresh(context);
+        }
+        return current;
+    }
+
+    /**
+     * Rebuilds the snapshot from the shared preferences and publishes it.
+     */
+    public static synchronized WeatherPreferences refresh(Context context) {
+        final Context appContext = context.getApplicationContext();
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(appContext);
+        if (sListener == null) {
+            sListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+                @Override
+                public void onSharedPreferenceChanged(SharedPreferences sharedPreferences,
+                                                      String key) {
+                    refresh(appContext);
+                }
+            };
+            prefs.registerOnSharedPreferenceChangeListener(sListener);
+        }
+        WeatherPreferences current = new WeatherPreferences(appContext, prefs);
+        sCurrent = current;
+        return current;
+    }
+}
@@ -44,6 +44,10 @@ public class WeatherContract {
     public static final String PATH_WEATHER = "weather";
     public static final String PATH_LOCATION = "location";
 
+    // Provider call() method which prunes old weather and stale locations, then compacts the
+    // database file.  See WeatherRetention for the arguments it accepts.
+    public static final String METHOD_APPLY_RETENTION = "applyRetention";
+
     // To make it easy to query for the exact date, we normalize all dates that go into
     // the database to the start of the the Julian day at UTC.
     public static long normalizeDate(long startDate) {
@@ -81,6 +85,11 @@ public class WeatherContract {
         public static final String COLUMN_COORD_LAT = "coord_lat";
         public static final String COLUMN_COORD_LONG = "coord_long";
 
+        // Last time, in milliseconds since the epoch, this location was synced for the user.
+        // Only the preferred location is synced, so the retention policy uses this to drop
+        // locations nobody is looking at anymore.
+        public static final String COLUMN_LAST_SYNCED = "last_synced";
+
         public static Uri buildLocationUri(long id) {
             return ContentUris.withAppendedId(CONTENT_URI, id);
         }
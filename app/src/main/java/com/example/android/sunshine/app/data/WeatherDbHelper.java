@@ -16,6 +16,8 @@
 package com.example.android.sunshine.app.data;
 
 import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 
@@ -28,7 +30,7 @@ import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
 public class WeatherDbHelper extends SQLiteOpenHelper {
 
     // If you change the database schema, you must increment the database version.
-    private static final int DATABASE_VERSION = 2;
+    private static final int DATABASE_VERSION = 4;
 
     static final String DATABASE_NAME = "weather.db";
 
@@ -45,7 +47,8 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
                 LocationEntry.COLUMN_LOCATION_SETTING + " TEXT UNIQUE NOT NULL, " +
                 LocationEntry.COLUMN_CITY_NAME + " TEXT NOT NULL, " +
                 LocationEntry.COLUMN_COORD_LAT + " REAL NOT NULL, " +
-                LocationEntry.COLUMN_COORD_LONG + " REAL NOT NULL " +
+                LocationEntry.COLUMN_COORD_LONG + " REAL NOT NULL, " +
+                LocationEntry.COLUMN_LAST_SYNCED + " INTEGER NOT NULL DEFAULT 0 " +
                 " );";
 
         final String SQL_CREATE_WEATHER_TABLE = "CREATE TABLE " + WeatherEntry.TABLE_NAME + " (" +
@@ -81,6 +84,36 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
 
         sqLiteDatabase.execSQL(SQL_CREATE_LOCATION_TABLE);
         sqLiteDatabase.execSQL(SQL_CREATE_WEATHER_TABLE);
+
+        // Every forecast query and the retention sweep filter by location and date
+        sqLiteDatabase.execSQL("CREATE INDEX weather_location_date_idx ON " +
+                WeatherEntry.TABLE_NAME + " (" + WeatherEntry.COLUMN_LOC_KEY + ", " +
+                WeatherEntry.COLUMN_DATE + ");");
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase sqLiteDatabase) {
+        super.onOpen(sqLiteDatabase);
+        // Deleting forecasts and locations lets the WeatherRetention policy hand free pages
+        // back to the file system a few at a time.  The mode can only change with a VACUUM,
+        // which can't run in the transaction onCreate and onUpgrade get, so an empty database
+        // is converted here, where rebuilding it costs next to nothing.
+        if (!sqLiteDatabase.isReadOnly()
+                && getAutoVacuum(sqLiteDatabase) != WeatherRetention.AUTO_VACUUM_INCREMENTAL
+                && DatabaseUtils.queryNumEntries(sqLiteDatabase, LocationEntry.TABLE_NAME) == 0
+                && DatabaseUtils.queryNumEntries(sqLiteDatabase, WeatherEntry.TABLE_NAME) == 0) {
+            sqLiteDatabase.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+            sqLiteDatabase.execSQL("VACUUM");
+        }
+    }
+
+    static long getAutoVacuum(SQLiteDatabase sqLiteDatabase) {
+        Cursor c = sqLiteDatabase.rawQuery("PRAGMA auto_vacuum", null);
+        try {
+            return c.moveToFirst() ? c.getLong(0) : 0;
+        } finally {
+            c.close();
+        }
     }
 
     @Override
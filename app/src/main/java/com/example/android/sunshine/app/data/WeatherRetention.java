@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Bundle;
+import android.text.format.Time;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+/**
+ * Retention and compaction policy for weather.db.
+ *
+ * A policy keeps the last {@code historyDays} days of forecasts before today, drops locations
+ * that haven't been synced for {@code staleLocationDays} days (along with their weather), and
+ * then returns at most {@code vacuumBudgetBytes} of free pages to the file system.
+ *
+ * Policies travel to the {@link WeatherProvider} as a Bundle through
+ * {@link WeatherContract#METHOD_APPLY_RETENTION}, which runs them against the open database.
+ */
+public class WeatherRetention {
+    private static final String LOG_TAG = WeatherRetention.class.getSimpleName();
+
+    // By default we keep nothing before today, which is what the sync always did.
+    public static final int DEFAULT_HISTORY_DAYS = 0;
+    public static final int DEFAULT_STALE_LOCATION_DAYS = 30;
+    public static final long DEFAULT_VACUUM_BUDGET_BYTES = 256 * 1024;
+
+    // Bundle keys used for the provider call, both for the policy and for its result
+    public static final String EXTRA_HISTORY_DAYS = "history_days";
+    public static final String EXTRA_STALE_LOCATION_DAYS = "stale_location_days";
+    public static final String EXTRA_VACUUM_BUDGET_BYTES = "vacuum_budget_bytes";
+    public static final String RESULT_WEATHER_DELETED = "weather_deleted";
+    public static final String RESULT_LOCATIONS_DELETED = "locations_deleted";
+    public static final String RESULT_BYTES_RECLAIMED = "bytes_reclaimed";
+
+    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+
+    // SQLite's auto_vacuum modes, as reported by "PRAGMA auto_vacuum"
+    static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    private final int mHistoryDays;
+    private final int mStaleLocationDays;
+    private final long mVacuumBudgetBytes;
+
+    public WeatherRetention() {
+        this(DEFAULT_HISTORY_DAYS, DEFAULT_STALE_LOCATION_DAYS, DEFAULT_VACUUM_BUDGET_BYTES);
+    }
+
+    /**
+     * @param historyDays number of days before today whose forecasts are kept
+     * @param staleLocationDays locations not synced for this many days are dropped
+     * @param vacuumBudgetBytes upper bound of free space handed back to the file system per run,
+     *                          apart from the one full VACUUM that converts an old database
+     */
+    public WeatherRetention(int historyDays, int staleLocationDays, long vacuumBudgetBytes) {
+        mHistoryDays = Math.max(0, historyDays);
+        mStaleLocationDays = Math.max(1, staleLocationDays);
+        mVacuumBudgetBytes = Math.max(0, vacuumBudgetBytes);
+    }
+
+    public static WeatherRetention fromBundle(Bundle extras) {
+        if (extras == null) {
+            return new WeatherRetention();
+        }
+        return new WeatherRetention(
+                extras.getInt(EXTRA_HISTORY_DAYS, DEFAULT_HISTORY_DAYS),
+                extras.getInt(EXTRA_STALE_LOCATION_DAYS, DEFAULT_STALE_LOCATION_DAYS),
+                extras.getLong(EXTRA_VACUUM_BUDGET_BYTES, DEFAULT_VACUUM_BUDGET_BYTES));
+    }
+
+    public Bundle toBundle() {
+        Bundle extras = new Bundle();
+        extras.putInt(EXTRA_HISTORY_DAYS, mHistoryDays);
+        extras.putInt(EXTRA_STALE_LOCATION_DAYS, mStaleLocationDays);
+        extras.putLong(EXTRA_VACUUM_BUDGET_BYTES, mVacuumBudgetBytes);
+        return extras;
+    }
+
+    /**
+     * Applies the policy.  Deletes run in one transaction; the vacuum has to run outside of it.
+     *
+     * @param db writable weather database
+     * @param now current time in milliseconds
+     * @return a Bundle with the number of deleted rows and the bytes reclaimed
+     */
+    Bundle apply(SQLiteDatabase db, long now) {
+        // Dates are stored as the start of the local day, the same way the sync computes them
+        Time dayTime = new Time();
+        dayTime.setToNow();
+        int julianToday = Time.getJulianDay(now, dayTime.gmtoff);
+        long oldestKeptDate = dayTime.setJulianDay(julianToday - mHistoryDays);
+        long staleBefore = now - mStaleLocationDays * DAY_IN_MILLIS;
+
+        int weatherDeleted;
+        int locationsDeleted;
+        db.beginTransaction();
+        try {
+            weatherDeleted = db.delete(WeatherEntry.TABLE_NAME,
+                    WeatherEntry.COLUMN_DATE + " < ?",
+                    new String[]{Long.toString(oldestKeptDate)});
+
+            // Weather rows reference their location, so those go first
+            String staleLocations = "SELECT " + LocationEntry._ID + " FROM " +
+                    LocationEntry.TABLE_NAME + " WHERE " + LocationEntry.COLUMN_LAST_SYNCED + " < ?";
+            String[] staleArgs = new String[]{Long.toString(staleBefore)};
+            weatherDeleted += db.delete(WeatherEntry.TABLE_NAME,
+                    WeatherEntry.COLUMN_LOC_KEY + " IN (" + staleLocations + ")", staleArgs);
+            locationsDeleted = db.delete(LocationEntry.TABLE_NAME,
+                    LocationEntry.COLUMN_LAST_SYNCED + " < ?", staleArgs);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        long bytesReclaimed = vacuum(db);
+        Log.d(LOG_TAG, "Retention removed " + weatherDeleted + " forecasts and " +
+                locationsDeleted + " locations, reclaimed " + bytesReclaimed + " bytes");
+
+        Bundle result = new Bundle();
+        result.putInt(RESULT_WEATHER_DELETED, weatherDeleted);
+        result.putInt(RESULT_LOCATIONS_DELETED, locationsDeleted);
+        result.putLong(RESULT_BYTES_RECLAIMED, bytesReclaimed);
+        return result;
+    }
+
+    /**
+     * Hands free pages back to the file system, never more than the vacuum budget per run.
+     *
+     * {@link WeatherDbHelper} converts new databases to incremental auto_vacuum while they're
+     * still empty.  One that already held data is converted here with a single full VACUUM once
+     * it has a budget's worth of free pages.  That run rebuilds the whole file, so it takes as
+     * long as the database is big, however small the budget.
+     */
+    private long vacuum(SQLiteDatabase db) {
+        if (mVacuumBudgetBytes == 0) {
+            return 0;
+        }
+        long pageSize = queryLong(db, "PRAGMA page_size");
+        long freePages = queryLong(db, "PRAGMA freelist_count");
+        if (pageSize <= 0 || freePages == 0) {
+            return 0;
+        }
+
+        long pagesBefore = queryLong(db, "PRAGMA page_count");
+        if (queryLong(db, "PRAGMA auto_vacuum") == AUTO_VACUUM_INCREMENTAL) {
+            long pages = Math.min(freePages, Math.max(1, mVacuumBudgetBytes / pageSize));
+            // The pragma frees one page per step, so the cursor has to be run to completion
+            Cursor c = db.rawQuery("PRAGMA incremental_vacuum(" + pages + ")", null);
+            try {
+                c.getCount();
+            } finally {
+                c.close();
+            }
+        } else if (freePages * pageSize >= mVacuumBudgetBytes) {
+            db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+            db.execSQL("VACUUM");
+        } else {
+            return 0;
+        }
+        return Math.max(0, pagesBefore - queryLong(db, "PRAGMA page_count")) * pageSize;
+    }
+
+    private static long queryLong(SQLiteDatabase db, String sql) {
+        Cursor c = db.rawQuery(sql, null);
+        try {
+            return c.moveToFirst() ? c.getLong(0) : 0;
+        } finally {
+            c.close();
+        }
+    }
+}
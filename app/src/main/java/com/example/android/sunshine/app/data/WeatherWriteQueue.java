@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.RemoteException;
+import android.util.Log;
+
+import java.util.ArrayList;
+
+/**
+ * Opt-in write queue for the {@link WeatherProvider}.
+ *
+ * Callers that don't need the result of a write can hand it to the queue instead of the
+ * ContentResolver.  Writes that arrive within the same window are applied as one batch, which
+ * means one transaction and one notification per changed URI instead of one of each per row.
+ */
+public class WeatherWriteQueue {
+    private static final String LOG_TAG = WeatherWriteQueue.class.getSimpleName();
+
+    public static final long DEFAULT_WINDOW_MILLIS = 50;
+
+    private static WeatherWriteQueue sInstance;
+
+    private final ContentResolver mResolver;
+    private final long mWindowMillis;
+    private final Handler mHandler;
+
+    // Guards mPending; mFlushLock keeps batches in the order their writes were queued
+    private final Object mLock = new Object();
+    private final Object mFlushLock = new Object();
+    private ArrayList<ContentProviderOperation> mPending = new ArrayList<ContentProviderOperation>();
+
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    public static synchronized WeatherWriteQueue getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new WeatherWriteQueue(context.getApplicationContext(), DEFAULT_WINDOW_MILLIS);
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param context used to get at the ContentResolver
+     * @param windowMillis how long the first queued write waits for others to join its batch
+     */
+    public WeatherWriteQueue(Context context, long windowMillis) {
+        mResolver = context.getContentResolver();
+        mWindowMillis = windowMillis;
+        HandlerThread thread = new HandlerThread(LOG_TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        mHandler = new Handler(thread.getLooper());
+    }
+
+    public void insert(Uri uri, ContentValues values) {
+        enqueue(ContentProviderOperation.newInsert(uri)
+                .withValues(values)
+                .withYieldAllowed(true)
+                .build());
+    }
+
+    public void update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        enqueue(ContentProviderOperation.newUpdate(uri)
+                .withValues(values)
+                .withSelection(selection, selectionArgs)
+                .withYieldAllowed(true)
+                .build());
+    }
+
+    public void delete(Uri uri, String selection, String[] selectionArgs) {
+        enqueue(ContentProviderOperation.newDelete(uri)
+                .withSelection(selection, selectionArgs)
+                .withYieldAllowed(true)
+                .build());
+    }
+
+    private void enqueue(ContentProviderOperation operation) {
+        synchronized (mLock) {
+            mPending.add(operation);
+            // The first write of a window schedules the flush; the rest just ride along
+            if (mPending.size() == 1) {
+                mHandler.postDelayed(mFlushRunnable, mWindowMillis);
+            }
+        }
+    }
+
+    /**
+     * Applies everything queued so far on the calling thread.
+     *
+     * @return the number of operations applied
+     */
+    public int flush() {
+        mHandler.removeCallbacks(mFlushRunnable);
+        synchronized (mFlushLock) {
+            ArrayList<ContentProviderOperation> operations;
+            synchronized (mLock) {
+                if (mPending.isEmpty()) {
+                    return 0;
+                }
+                operations = mPending;
+                mPending = new ArrayList<ContentProviderOperation>();
+            }
+            try {
+                mResolver.applyBatch(WeatherContract.CONTENT_AUTHORITY, operations);
+            } catch (RemoteException | OperationApplicationException e) {
+                Log.e(LOG_TAG, "Error applying " + operations.size() + " queued writes", e);
+                return 0;
+            }
+            return operations.size();
+        }
+    }
+
+    /**
+     * Applies everything queued so far on the calling thread, then stops the queue's thread.
+     * Writes queued afterwards are never applied.  The shared instance lives as long as the
+     * process and is never quit.
+     */
+    public void quit() {
+        flush();
+        mHandler.getLooper().quit();
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.gcm;
+
+import android.app.AlarmManager;
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import android.os.SystemClock;
+import android.support.v4.app.NotificationCompat;
+import android.util.Log;
+
+import com.example.android.sunshine.app.MainActivity;
+import com.example.android.sunshine.app.R;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Turns severe weather alerts into notifications, one per location.
+ *
+ * A storm front can send dozens of alerts in a few minutes, so updates are rate limited by a
+ * {@link TokenBucket}.  An alert the bucket allows is posted straight away; the rest are held
+ * back and go out together in the next update the bucket allows.  A location with more than one
+ * recent alert gets an inbox style notification listing the latest of them.
+ *
+ * Our process may well be gone by the time held back alerts are due, so the alerts are kept in
+ * preferences and the next update is a wakeup alarm that {@link AlertFlushReceiver} picks up.
+ */
+public class AlertNotifier {
+    public static final String LOG_TAG = AlertNotifier.class.getSimpleName();
+
+    // A couple of updates straight away, then one every half minute at most
+    static final int BURST_UPDATES = 2;
+    static final long REFILL_MS = 30 * 1000;
+    // Alerts older than this are left out of a location's next update
+    static final long AGGREGATE_MS = 30 * 60 * 1000;
+    // As many as an expanded inbox style notification shows
+    static final int INBOX_LINES = 5;
+
+    static final String PREFS_NAME = "weather_alerts";
+
+    // How each location's alerts are kept in the preferences
+    private static final String JSON_MESSAGES = "messages";
+    private static final String JSON_COUNT = "count";
+    private static final String JSON_LAST_ALERT = "last";
+    private static final String JSON_PENDING = "pending";
+
+    private static AlertNotifier sInstance;
+
+    private final Context mContext;
+    private final TokenBucket mBucket;
+    private final SharedPreferences mPrefs;
+
+    // Alerts by location, the collapse key of the notifications
+    private final HashMap<String, LocationAlerts> mAlerts = new HashMap<String, LocationAlerts>();
+    private boolean mFlushScheduled;
+    private Bitmap mLargeIcon;
+
+    private int mReceived;
+    private int mPosted;
+
+    private static class LocationAlerts {
+        // Newest last
+        final ArrayList<String> mMessages = new ArrayList<String>(INBOX_LINES);
+        int mCount;
+        // On the elapsed realtime clock, like the bucket
+        long mLastAlertMillis;
+        // Whether there are alerts the notification doesn't show yet
+        boolean mPending;
+
+        JSONObject toJson() throws JSONException {
+            return new JSONObject()
+                    .put(JSON_MESSAGES, new JSONArray(mMessages))
+                    .put(JSON_COUNT, mCount)
+                    .put(JSON_LAST_ALERT, mLastAlertMillis)
+                    .put(JSON_PENDING, mPending);
+        }
+
+        static LocationAlerts fromJson(String json) throws JSONException {
+            JSONObject alertsJson = new JSONObject(json);
+            LocationAlerts alerts = new LocationAlerts();
+            JSONArray messages = alertsJson.getJSONArray(JSON_MESSAGES);
+            for (int i = 0; i < messages.length(); i++) {
+                alerts.mMessages.add(messages.getString(i));
+            }
+            alerts.mCount = alertsJson.getInt(JSON_COUNT);
+            alerts.mLastAlertMillis = alertsJson.getLong(JSON_LAST_ALERT);
+            alerts.mPending = alertsJson.getBoolean(JSON_PENDING);
+            return alerts;
+        }
+    }
+
+    public static synchronized AlertNotifier getInstance(Context context) {
+        if (null == sInstance) {
+            Context appContext = context.getApplicationContext();
+            sInstance = new AlertNotifier(appContext,
+                    new TokenBucket(BURST_UPDATES, REFILL_MS),
+                    appContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE));
+        }
+        return sInstance;
+    }
+
+    AlertNotifier(Context context, TokenBucket bucket, SharedPreferences prefs) {
+        mContext = context;
+        mBucket = bucket;
+        mPrefs = prefs;
+        load(SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * Notifies of an alert for a location.  May be called from any thread.
+     */
+    public static void onAlert(Context context, String location, String message) {
+        getInstance(context).onAlert(location, message, SystemClock.elapsedRealtime());
+    }
+
+    synchronized void onAlert(String location, String message, long now) {
+        mReceived++;
+        LocationAlerts alerts = mAlerts.get(location);
+        if (null == alerts) {
+            alerts = new LocationAlerts();
+            mAlerts.put(location, alerts);
+        } else if (now - alerts.mLastAlertMillis > AGGREGATE_MS) {
+            alerts.mMessages.clear();
+            alerts.mCount = 0;
+        }
+        if (alerts.mMessages.size() == INBOX_LINES) {
+            alerts.mMessages.remove(0);
+        }
+        alerts.mMessages.add(message);
+        alerts.mCount++;
+        alerts.mLastAlertMillis = now;
+
+        if (mBucket.tryAcquire(now)) {
+            update(location, alerts);
+        } else {
+            alerts.mPending = true;
+            if (!mFlushScheduled) {
+                scheduleFlush(mBucket.getDelayMillis(now));
+            }
+        }
+        save(location, alerts);
+    }
+
+    /**
+     * Posts what the bucket allows of the held back alerts, and schedules another flush for the
+     * rest.  Called by {@link AlertFlushReceiver}.
+     */
+    synchronized void flush(long now) {
+        mFlushScheduled = false;
+        for (Map.Entry<String, LocationAlerts> entry : mAlerts.entrySet()) {
+            LocationAlerts alerts = entry.getValue();
+            if (!alerts.mPending) {
+                continue;
+            }
+            if (!mBucket.tryAcquire(now)) {
+                scheduleFlush(mBucket.getDelayMillis(now));
+                break;
+            }
+            update(entry.getKey(), alerts);
+            save(entry.getKey(), alerts);
+        }
+        Log.d(LOG_TAG, "Weather alerts: " + mReceived + " received, " + mPosted + " posted");
+    }
+
+    /**
+     * Sets a wakeup alarm for {@link AlertFlushReceiver}, replacing any set before.
+     */
+    void scheduleFlush(long delayMillis) {
+        mFlushScheduled = true;
+        AlarmManager alarmManager = (AlarmManager) mContext.getSystemService(Context.ALARM_SERVICE);
+        PendingIntent flushIntent = PendingIntent.getBroadcast(mContext, 0,
+                new Intent(mContext, AlertFlushReceiver.class), PendingIntent.FLAG_UPDATE_CURRENT);
+        long triggerAt = SystemClock.elapsedRealtime() + delayMillis;
+        // A plain set() may be put off for minutes from KitKat on, and not fire at all in Doze
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            alarmManager.setExactAndAllowWhileIdle(
+                    AlarmManager.ELAPSED_REALTIME_WAKEUP, triggerAt, flushIntent);
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            alarmManager.setExact(AlarmManager.ELAPSED_REALTIME_WAKEUP, triggerAt, flushIntent);
+        } else {
+            alarmManager.set(AlarmManager.ELAPSED_REALTIME_WAKEUP, triggerAt, flushIntent);
+        }
+    }
+
+    private void update(String location, LocationAlerts alerts) {
+        alerts.mPending = false;
+        mPosted++;
+        postNotification(location, buildNotification(alerts));
+    }
+
+    private void save(String location, LocationAlerts alerts) {
+        try {
+            mPrefs.edit().putString(location, alerts.toJson().toString()).apply();
+        } catch (JSONException e) {
+            Log.e(LOG_TAG, "Error saving alerts for " + location, e);
+        }
+    }
+
+    // Picks up the alerts a previous process left, dropping those from before a reboot or too
+    // old to show again
+    private void load(long now) {
+        SharedPreferences.Editor editor = mPrefs.edit();
+        for (Map.Entry<String, ?> entry : mPrefs.getAll().entrySet()) {
+            try {
+                LocationAlerts alerts = LocationAlerts.fromJson((String) entry.getValue());
+                if (alerts.mLastAlertMillis <= now
+                        && now - alerts.mLastAlertMillis <= AGGREGATE_MS) {
+                    mAlerts.put(entry.getKey(), alerts);
+                    continue;
+                }
+            } catch (JSONException | ClassCastException e) {
+                Log.e(LOG_TAG, "Error loading alerts for " + entry.getKey(), e);
+            }
+            editor.remove(entry.getKey());
+        }
+        editor.apply();
+    }
+
+    /**
+     * Posts or updates the notification for a location.
+     */
+    void postNotification(String location, Notification notification) {
+        NotificationManager notificationManager =
+                (NotificationManager) mContext.getSystemService(Context.NOTIFICATION_SERVICE);
+        notificationManager.notify(location, MyGcmListenerService.NOTIFICATION_ID, notification);
+    }
+
+    private Notification buildNotification(LocationAlerts alerts) {
+        PendingIntent contentIntent =
+                PendingIntent.getActivity(mContext, 0, new Intent(mContext, MainActivity.class), 0);
+        String latest = alerts.mMessages.get(alerts.mMessages.size() - 1);
+
+        // Notifications using both a large and a small icon (which yours should!) need the large
+        // icon as a bitmap.  Generally, you want to use the app icon as the small icon, so that
+        // users understand what app is triggering this notification.
+        NotificationCompat.Builder builder =
+                new NotificationCompat.Builder(mContext)
+                        .setSmallIcon(R.drawable.art_clear)
+                        .setLargeIcon(getLargeIcon())
+                        .setContentTitle(mContext.getString(R.string.gcm_weather_alert_title))
+                        .setContentText(latest)
+                        .setPriority(NotificationCompat.PRIORITY_HIGH)
+                        // Updates during a storm shouldn't buzz every time
+                        .setOnlyAlertOnce(true)
+                        .setAutoCancel(true)
+                        .setContentIntent(contentIntent);
+        if (alerts.mCount == 1) {
+            builder.setStyle(new NotificationCompat.BigTextStyle().bigText(latest));
+        } else {
+            NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle();
+            for (int i = alerts.mMessages.size() - 1; i >= 0; i--) {
+                style.addLine(alerts.mMessages.get(i));
+            }
+            if (alerts.mCount > alerts.mMessages.size()) {
+                style.setSummaryText(mContext.getString(R.string.gcm_weather_alerts_more,
+                        alerts.mCount - alerts.mMessages.size()));
+            }
+            builder.setStyle(style).setNumber(alerts.mCount);
+        }
+        return builder.build();
+    }
+
+    // Decoded once, at the size the notification shows it
+    private Bitmap getLargeIcon() {
+        if (null == mLargeIcon) {
+            Resources resources = mContext.getResources();
+            Bitmap art = BitmapFactory.decodeResource(resources, R.drawable.art_storm);
+            int width = resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_width);
+            int height = resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_height);
+            mLargeIcon = Bitmap.createScaledBitmap(art, width, height, true);
+            if (mLargeIcon != art) {
+                art.recycle();
+            }
+        }
+        return mLargeIcon;
+    }
+
+    /**
+     * @return how many alerts have been received
+     */
+    public synchronized int getReceivedCount() {
+        return mReceived;
+    }
+
+    /**
+     * @return how many notifications have been posted or updated for them
+     */
+    public synchronized int getPostedCount() {
+        return mPosted;
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.gcm;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.os.RemoteException;
+import android.text.format.Time;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+
+/**
+ * The days of a location's forecast that changed, as pushed by our server, so the forecast we
+ * have can be brought up to date without fetching all of it again.
+ *
+ * The payload names fields the way OpenWeatherMap does, temperatures are metric, and each day
+ * is given as the number of days after today:
+ * <pre>
+ * {"location": "94043",
+ *  "days": [{"day": 1, "id": 501, "main": "Rain", "max": 12.5, "min": 7.1}]}
+ * </pre>
+ * A day carries only the fields that changed, but must be one we already have.
+ */
+public class ForecastDelta {
+    public static final String LOG_TAG = ForecastDelta.class.getSimpleName();
+
+    static final String JSON_LOCATION = "location";
+    static final String JSON_DAYS = "days";
+    static final String JSON_DAY = "day";
+    static final String JSON_WEATHER_ID = "id";
+    static final String JSON_DESCRIPTION = "main";
+    static final String JSON_MAX = "max";
+    static final String JSON_MIN = "min";
+
+    // The sync never keeps more days than this
+    static final int MAX_DAYS = 14;
+
+    private static final String WEATHER_SELECTION =
+            WeatherEntry.COLUMN_LOC_KEY + " = ? AND " + WeatherEntry.COLUMN_DATE + " = ?";
+
+    public final String mLocationSetting;
+    // Days after today, and the new values for each
+    final int[] mDays;
+    final ContentValues[] mValues;
+
+    private ForecastDelta(String locationSetting, int[] days, ContentValues[] values) {
+        mLocationSetting = locationSetting;
+        mDays = days;
+        mValues = values;
+    }
+
+    /**
+     * @throws JSONException if the payload isn't a forecast delta, or changes a day we can't have
+     */
+    public static ForecastDelta fromJson(String json) throws JSONException {
+        JSONObject deltaJson = new JSONObject(json);
+        String locationSetting = deltaJson.getString(JSON_LOCATION);
+        JSONArray daysJson = deltaJson.getJSONArray(JSON_DAYS);
+
+        int count = daysJson.length();
+        int[] days = new int[count];
+        ContentValues[] values = new ContentValues[count];
+        for (int i = 0; i < count; i++) {
+            JSONObject dayJson = daysJson.getJSONObject(i);
+            days[i] = dayJson.getInt(JSON_DAY);
+            if (days[i] < 0 || days[i] >= MAX_DAYS) {
+                throw new JSONException("Day out of range: " + days[i]);
+            }
+            ContentValues dayValues = new ContentValues();
+            if (dayJson.has(JSON_WEATHER_ID)) {
+                dayValues.put(WeatherEntry.COLUMN_WEATHER_ID, dayJson.getInt(JSON_WEATHER_ID));
+            }
+            if (dayJson.has(JSON_DESCRIPTION)) {
+                dayValues.put(WeatherEntry.COLUMN_SHORT_DESC, dayJson.getString(JSON_DESCRIPTION));
+            }
+            if (dayJson.has(JSON_MAX)) {
+                dayValues.put(WeatherEntry.COLUMN_MAX_TEMP, dayJson.getDouble(JSON_MAX));
+            }
+            if (dayJson.has(JSON_MIN)) {
+                dayValues.put(WeatherEntry.COLUMN_MIN_TEMP, dayJson.getDouble(JSON_MIN));
+            }
+            if (dayValues.size() == 0) {
+                throw new JSONException("Nothing changed on day " + days[i]);
+            }
+            values[i] = dayValues;
+        }
+        return new ForecastDelta(locationSetting, days, values);
+    }
+
+    /**
+     * Writes the changed days to the {@link com.example.android.sunshine.app.data.WeatherProvider}
+     * in one batch, so observers hear about it once.
+     *
+     * @return true if every day was applied; false if we don't have the location or one of the
+     * days, in which case only a full sync can bring the forecast up to date
+     */
+    public boolean apply(Context context) {
+        ContentResolver resolver = context.getContentResolver();
+        long locationId = getLocationId(resolver, mLocationSetting);
+        if (-1 == locationId) {
+            return false;
+        }
+
+        // Date the days the way the sync does, from today's julian day
+        Time dayTime = new Time();
+        dayTime.setToNow();
+        int julianStartDay = Time.getJulianDay(System.currentTimeMillis(), dayTime.gmtoff);
+        dayTime = new Time();
+
+        String locationIdArg = Long.toString(locationId);
+        ArrayList<ContentProviderOperation> operations =
+                new ArrayList<ContentProviderOperation>(mDays.length);
+        for (int i = 0; i < mDays.length; i++) {
+            long date = WeatherContract.normalizeDate(dayTime.setJulianDay(julianStartDay + mDays[i]));
+            operations.add(ContentProviderOperation.newUpdate(WeatherEntry.CONTENT_URI)
+                    .withValues(mValues[i])
+                    .withSelection(WEATHER_SELECTION,
+                            new String[]{locationIdArg, Long.toString(date)})
+                    .build());
+        }
+
+        ContentProviderResult[] results;
+        try {
+            results = resolver.applyBatch(WeatherContract.CONTENT_AUTHORITY, operations);
+        } catch (RemoteException | OperationApplicationException e) {
+            Log.e(LOG_TAG, "Error applying forecast delta for " + mLocationSetting, e);
+            return false;
+        }
+        boolean complete = true;
+        for (ContentProviderResult result : results) {
+            if (null == result.count || result.count == 0) {
+                complete = false;
+            }
+        }
+        return complete;
+    }
+
+    /**
+     * @return how many days the delta changes
+     */
+    public int getDayCount() {
+        return mDays.length;
+    }
+
+    private static long getLocationId(ContentResolver resolver, String locationSetting) {
+        Cursor cursor = resolver.query(LocationEntry.CONTENT_URI,
+                new String[]{LocationEntry._ID},
+                LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
+                new String[]{locationSetting},
+                null);
+        if (null == cursor) {
+            return -1;
+        }
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.gcm;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
+import com.google.android.gms.gcm.GcmPubSub;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Keeps this device subscribed to a GCM topic for each location we have weather for, so our
+ * server can push {@link ForecastDelta}s for a location to everyone who follows it.
+ *
+ * The subscriptions follow {@link LocationEntry}: the sync adds locations and retention drops
+ * stale ones, and afterwards {@link RegistrationIntentService} brings the topics in line.  A
+ * location whose topic we're subscribed to has a live push channel, and is polled less often.
+ */
+public class LocationTopics {
+    public static final String LOG_TAG = LocationTopics.class.getSimpleName();
+
+    public static final String TOPIC_PREFIX = "/topics/";
+    // Our server names topics the same way
+    static final String TOPIC_NAME_PREFIX = "weather-";
+
+    static final String PREF_SUBSCRIBED_TOPICS = "subscribedTopics";
+
+    /**
+     * @return the topic for a location.  Characters GCM doesn't allow in topic names are
+     * percent-encoded as UTF-8.
+     */
+    public static String getTopic(String locationSetting) {
+        StringBuilder topic = new StringBuilder(TOPIC_PREFIX).append(TOPIC_NAME_PREFIX);
+        byte[] bytes;
+        try {
+            bytes = locationSetting.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            // Every platform has UTF-8
+            throw new AssertionError(e);
+        }
+        for (byte b : bytes) {
+            char c = (char) (b & 0xff);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == '~') {
+                topic.append(c);
+            } else {
+                topic.append('%').append(Character.toUpperCase(Character.forDigit(c >> 4, 16)))
+                        .append(Character.toUpperCase(Character.forDigit(c & 0xf, 16)));
+            }
+        }
+        return topic.toString();
+    }
+
+    /**
+     * @return true if pushes for a location reach this device, so it can be polled less often
+     */
+    public static boolean hasLiveChannel(Context context, String locationSetting) {
+        // Topics are only saved once GCM has confirmed them for our current token
+        return getSubscribedTopics(context).contains(getTopic(locationSetting));
+    }
+
+    /**
+     * @return true if the locations we have and the topics we're subscribed to differ
+     */
+    public static boolean needsSync(Context context) {
+        return !getLocationTopics(context).equals(getSubscribedTopics(context));
+    }
+
+    /**
+     * Subscribes to the topics of new locations and drops those of locations that are gone,
+     * then has the sync adapter poll at the rate that suits the preferred location.  Talks to
+     * GCM, so never call it from the main thread.
+     *
+     * @param token       this device's registration token
+     * @param resubscribe true if the token is new, and every topic needs subscribing again
+     */
+    static void sync(Context context, String token, boolean resubscribe) {
+        GcmPubSub pubSub = GcmPubSub.getInstance(context);
+        Set<String> wanted = getLocationTopics(context);
+        Set<String> subscribed = resubscribe ? new HashSet<String>() : getSubscribedTopics(context);
+
+        for (String topic : wanted) {
+            if (subscribed.contains(topic)) {
+                continue;
+            }
+            try {
+                pubSub.subscribe(token, topic, null);
+                subscribed.add(topic);
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Error subscribing to " + topic, e);
+            }
+        }
+        Set<String> unwanted = new HashSet<String>(subscribed);
+        unwanted.removeAll(wanted);
+        for (String topic : unwanted) {
+            try {
+                pubSub.unsubscribe(token, topic);
+                subscribed.remove(topic);
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Error unsubscribing from " + topic, e);
+            }
+        }
+
+        PreferenceManager.getDefaultSharedPreferences(context).edit()
+                .putStringSet(PREF_SUBSCRIBED_TOPICS, subscribed)
+                .apply();
+        Log.d(LOG_TAG, "Subscribed to " + subscribed.size() + " of " + wanted.size() +
+                " location topics");
+        SunshineSyncAdapter.updatePeriodicSync(context);
+    }
+
+    static Set<String> getSubscribedTopics(Context context) {
+        // The set handed out by the preferences mustn't be changed, so always copy it
+        return new HashSet<String>(PreferenceManager.getDefaultSharedPreferences(context)
+                .getStringSet(PREF_SUBSCRIBED_TOPICS, Collections.<String>emptySet()));
+    }
+
+    private static Set<String> getLocationTopics(Context context) {
+        Set<String> topics = new HashSet<String>();
+        Cursor cursor = context.getContentResolver().query(LocationEntry.CONTENT_URI,
+                new String[]{LocationEntry.COLUMN_LOCATION_SETTING}, null, null, null);
+        if (null != cursor) {
+            while (cursor.moveToNext()) {
+                topics.add(getTopic(cursor.getString(0)));
+            }
+            cursor.close();
+        }
+        return topics;
+    }
+}
@@ -16,19 +16,14 @@
 
 package com.example.android.sunshine.app.gcm;
 
-import android.app.NotificationManager;
-import android.app.PendingIntent;
 import android.content.Context;
-import android.content.Intent;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.os.Bundle;
-import android.support.v4.app.NotificationCompat;
 import android.util.Log;
 import android.widget.Toast;
 
-import com.example.android.sunshine.app.MainActivity;
 import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
 import com.google.android.gms.gcm.GcmListenerService;
 
 import org.json.JSONException;
@@ -41,6 +36,8 @@ public class MyGcmListenerService extends GcmListenerService {
     private static final String EXTRA_DATA = "data";
     private static final String EXTRA_WEATHER = "weather";
     private static final String EXTRA_LOCATION = "location";
+    // Data messages carrying a ForecastDelta, rather than an alert
+    static final String EXTRA_FORECAST = "forecast";
 
     public static final int NOTIFICATION_ID = 1;
 
@@ -61,7 +58,13 @@ public class MyGcmListenerService extends GcmListenerService {
                 Toast.makeText(this, "SenderID string needs to be set", Toast.LENGTH_LONG).show();
             }
             // Not a bad idea to check that the message is coming from your server.
-            if ((senderId).equals(from)) {
+            if ((senderId).equals(from) && data.containsKey(EXTRA_FORECAST)) {
+                onForecastMessage(this, data);
+            } else if (from.startsWith(LocationTopics.TOPIC_PREFIX)
+                    && data.containsKey(EXTRA_FORECAST)) {
+                // Sent to everyone following a location
+                onForecastMessage(this, from, data);
+            } else if ((senderId).equals(from)) {
                 // Process message and then post a notification of the received message.
                 try {
                     JSONObject jsonObject = new JSONObject(data.getString(EXTRA_DATA));
@@ -69,7 +72,7 @@ public class MyGcmListenerService extends GcmListenerService {
                     String location = jsonObject.getString(EXTRA_LOCATION);
                     String alert =
                             String.format(getString(R.string.gcm_weather_alert), weather, location);
-                    sendNotification(alert);
+                    AlertNotifier.onAlert(this, location, alert);
                 } catch (JSONException e) {
                     // JSON parsing failed, so we just let this message go, since GCM is not one
                     // of our critical features.
@@ -80,31 +83,47 @@ public class MyGcmListenerService extends GcmListenerService {
     }
 
     /**
-     *  Put the message into a notification and post it.
-     *  This is just one simple example of what you might choose to do with a GCM message.
+     * Applies the forecast delta in a data message straight to the database, and has the sync
+     * adapter pass it on to the widgets, Muzei and the wearable, so a push can stand in for a
+     * full fetch.  If the delta refers to days we don't have, the preferred location is synced
+     * in full instead.  Called on the listener's worker thread.
      *
-     * @param message The alert message to be posted.
+     * @return true if the whole delta was applied
      */
-    private void sendNotification(String message) {
-        NotificationManager mNotificationManager =
-                (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
-        PendingIntent contentIntent =
-                PendingIntent.getActivity(this, 0, new Intent(this, MainActivity.class), 0);
+    static boolean onForecastMessage(Context context, Bundle data) {
+        return onForecastMessage(context, null, data);
+    }
 
-        // Notifications using both a large and a small icon (which yours should!) need the large
-        // icon as a bitmap. So we need to create that here from the resource ID, and pass the
-        // object along in our notification builder. Generally, you want to use the app icon as the
-        // small icon, so that users understand what app is triggering this notification.
-        Bitmap largeIcon = BitmapFactory.decodeResource(this.getResources(), R.drawable.art_storm);
-        NotificationCompat.Builder mBuilder =
-                new NotificationCompat.Builder(this)
-                        .setSmallIcon(R.drawable.art_clear)
-                        .setLargeIcon(largeIcon)
-                        .setContentTitle("Weather Alert!")
-                        .setStyle(new NotificationCompat.BigTextStyle().bigText(message))
-                        .setContentText(message)
-                        .setPriority(NotificationCompat.PRIORITY_HIGH);
-        mBuilder.setContentIntent(contentIntent);
-        mNotificationManager.notify(NOTIFICATION_ID, mBuilder.build());
+    /**
+     * Applies the forecast delta in a message sent to a location's topic, which must be the
+     * topic of the location the delta is for.
+     *
+     * @param topic the topic the message came from, or null if it was sent to this device
+     */
+    static boolean onForecastMessage(Context context, String topic, Bundle data) {
+        ForecastDelta delta;
+        try {
+            delta = ForecastDelta.fromJson(data.getString(EXTRA_FORECAST));
+        } catch (JSONException e) {
+            Log.e(TAG, "Invalid forecast delta", e);
+            return false;
+        }
+        if (null != topic && !topic.equals(LocationTopics.getTopic(delta.mLocationSetting))) {
+            Log.w(TAG, "Ignoring forecast delta for " + delta.mLocationSetting + " from " + topic);
+            return false;
+        }
+        boolean applied = delta.apply(context);
+        Log.d(TAG, "Forecast delta for " + delta.mLocationSetting + ", " + delta.getDayCount() +
+                " days, " + (applied ? "applied" : "incomplete"));
+        // Other locations only matter once they're shown, and the sync that brings them up
+        // will fetch them anyway
+        if (delta.mLocationSetting.equals(Utility.getPreferredLocation(context))) {
+            if (applied) {
+                SunshineSyncAdapter.fanOutImmediately(context);
+            } else {
+                SunshineSyncAdapter.syncImmediately(context);
+            }
+        }
+        return applied;
     }
-}
\ No newline at end of file
+}
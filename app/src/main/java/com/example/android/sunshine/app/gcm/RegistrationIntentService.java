@@ -16,6 +16,7 @@
 package com.example.android.sunshine.app.gcm;
 
 import android.app.IntentService;
+import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.preference.PreferenceManager;
@@ -31,13 +32,31 @@ import com.google.android.gms.iid.InstanceID;
 public class RegistrationIntentService extends IntentService {
     private static final String TAG = "RegIntentService";
 
+    // Only bring the location topics in line; the token has already been sent
+    static final String ACTION_SYNC_TOPICS =
+            "com.example.android.sunshine.app.gcm.ACTION_SYNC_TOPICS";
+
     public RegistrationIntentService() {
         super(TAG);
     }
 
+    /**
+     * Brings the location topics in line with the locations we have, if they've changed.  Does
+     * nothing until the token has been sent.
+     */
+    public static void syncTopics(Context context) {
+        SharedPreferences sharedPreferences = PreferenceManager.getDefaultSharedPreferences(context);
+        if (sharedPreferences.getBoolean(MainActivity.SENT_TOKEN_TO_SERVER, false)
+                && LocationTopics.needsSync(context)) {
+            context.startService(new Intent(ACTION_SYNC_TOPICS)
+                    .setClass(context, RegistrationIntentService.class));
+        }
+    }
+
     @Override
     protected void onHandleIntent(Intent intent) {
         SharedPreferences sharedPreferences = PreferenceManager.getDefaultSharedPreferences(this);
+        boolean topicsOnly = ACTION_SYNC_TOPICS.equals(intent.getAction());
 
         try {
             // In the (unlikely) event that multiple refresh operations occur simultaneously,
@@ -52,7 +71,14 @@ public class RegistrationIntentService extends IntentService {
                 if ( senderId.length() != 0 ) {
                     String token = instanceID.getToken(senderId,
                             GoogleCloudMessaging.INSTANCE_ID_SCOPE, null);
-                    sendRegistrationToServer(token);
+                    if (!topicsOnly) {
+                        sendRegistrationToServer(token);
+                    }
+                    // A new token starts out with no subscriptions
+                    LocationTopics.sync(this, token, !topicsOnly);
+                }
+                if (topicsOnly) {
+                    return;
                 }
 
                 // You should store a boolean that indicates whether the generated token has been
@@ -62,6 +88,10 @@ public class RegistrationIntentService extends IntentService {
             }
         } catch (Exception e) {
             Log.d(TAG, "Failed to complete token refresh", e);
+            if (topicsOnly) {
+                // The token we sent is still good; the topics can wait for the next sync
+                return;
+            }
 
             // If an exception happens while fetching the new token or updating our registration data
             // on a third-party server, this ensures that we'll attempt the update at a later time.
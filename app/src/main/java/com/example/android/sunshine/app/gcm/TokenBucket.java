@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.gcm;
+
+/**
+ * Allows a short burst of up to {@code capacity} actions, then one per {@code refillMillis}.
+ * Times are passed in so callers choose the clock.  Not thread safe.
+ */
+class TokenBucket {
+    private final int mCapacity;
+    private final long mRefillMillis;
+    private int mTokens;
+    // When the last token was added, or when the bucket was last seen full
+    private long mLastRefillMillis;
+
+    TokenBucket(int capacity, long refillMillis) {
+        mCapacity = capacity;
+        mRefillMillis = refillMillis;
+        mTokens = capacity;
+    }
+
+    /**
+     * @return true, using up a token, if the action may go ahead now
+     */
+    boolean tryAcquire(long nowMillis) {
+        refill(nowMillis);
+        if (mTokens > 0) {
+            mTokens--;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return how long until {@link #tryAcquire} would succeed, or 0 if it would now
+     */
+    long getDelayMillis(long nowMillis) {
+        refill(nowMillis);
+        return (mTokens > 0) ? 0 : mLastRefillMillis + mRefillMillis - nowMillis;
+    }
+
+    private void refill(long nowMillis) {
+        if (mTokens >= mCapacity) {
+            // A full bucket doesn't bank time towards the next token
+            mLastRefillMillis = nowMillis;
+            return;
+        }
+        long refills = (nowMillis - mLastRefillMillis) / mRefillMillis;
+        if (refills > 0) {
+            mTokens = (int) Math.min(mCapacity, mTokens + refills);
+            mLastRefillMillis += refills * mRefillMillis;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.muzei;
+
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.support.v4.content.FileProvider;
+import android.util.DisplayMetrics;
+import android.util.Log;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.bumptech.glide.load.resource.bitmap.BitmapTransformation;
+import com.example.android.sunshine.app.R;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Keeps the weather photos we give Muzei on the device, scaled down to the screen, and serves
+ * them through our {@link FileProvider}.  The originals run to several megabytes, so each one
+ * is downloaded once and Muzei never has to fetch it again.
+ */
+public class MuzeiImageCache {
+    public static final String LOG_TAG = MuzeiImageCache.class.getSimpleName();
+
+    static final String MUZEI_PACKAGE = "net.nurik.roman.muzei";
+
+    // Must match res/xml/muzei_paths.xml
+    private static final String DIRECTORY = "muzei";
+    // One per weather condition we have a photo for, with room to spare
+    static final int MAX_FILES = 16;
+    private static final int JPEG_QUALITY = 90;
+
+    /**
+     * @return a content Uri Muzei can read the photo at {@code imageUrl} from, or null if it's
+     * not cached yet
+     */
+    public static Uri getCachedUri(Context context, String imageUrl) {
+        File file = getFile(context, imageUrl);
+        return file.exists() ? shareWithMuzei(context, file) : null;
+    }
+
+    /**
+     * Returns a content Uri Muzei can read the photo at {@code imageUrl} from, downloading and
+     * scaling it first if it isn't cached.  Blocks on the network, so never call it from the
+     * main thread.
+     *
+     * @return the Uri, or null if the photo couldn't be cached
+     */
+    public static Uri getUri(Context context, String imageUrl) {
+        File file = getFile(context, imageUrl);
+        if (file.exists()) {
+            return shareWithMuzei(context, file);
+        }
+        File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(LOG_TAG, "Couldn't create " + directory);
+            return null;
+        }
+
+        // Big enough to cover the screen either way round; Muzei does the cropping.  Glide only
+        // downsamples by powers of two, so the transformation does the rest of the scaling.
+        DisplayMetrics displayMetrics = context.getResources().getDisplayMetrics();
+        int size = Math.max(displayMetrics.widthPixels, displayMetrics.heightPixels);
+        Bitmap bitmap;
+        try {
+            bitmap = Glide.with(context)
+                    .load(imageUrl)
+                    .asBitmap()
+                    // We keep the scaled copy ourselves; the original isn't worth the space
+                    .diskCacheStrategy(DiskCacheStrategy.NONE)
+                    .transform(new CoverTransformation(context))
+                    .into(size, size)
+                    .get();
+        } catch (InterruptedException | ExecutionException e) {
+            Log.e(LOG_TAG, "Error retrieving Muzei image from " + imageUrl, e);
+            return null;
+        }
+
+        File temp = new File(directory, file.getName() + ".tmp");
+        OutputStream out = null;
+        try {
+            out = new BufferedOutputStream(new FileOutputStream(temp));
+            bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+            out.close();
+            out = null;
+            if (!temp.renameTo(file)) {
+                Log.w(LOG_TAG, "Couldn't save Muzei image as " + file);
+                return null;
+            }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error saving Muzei image", e);
+            return null;
+        } finally {
+            if (null != out) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Error closing Muzei image", e);
+                }
+            }
+            temp.delete();
+        }
+        trim(directory);
+        return shareWithMuzei(context, file);
+    }
+
+    static File getFile(Context context, String imageUrl) {
+        // The URL is all that tells the photos apart, so name the file by a digest of it
+        return new File(new File(context.getCacheDir(), DIRECTORY), sha1(imageUrl) + ".jpg");
+    }
+
+    private static String sha1(String text) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1").digest(text.getBytes("UTF-8"));
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            // Every platform has both
+            throw new AssertionError(e);
+        }
+        StringBuilder hex = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16))
+                    .append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    private static Uri shareWithMuzei(Context context, File file) {
+        Uri uri = FileProvider.getUriForFile(context,
+                context.getString(R.string.muzei_image_authority), file);
+        try {
+            // Lasts until the device restarts; granting again is harmless
+            context.grantUriPermission(MUZEI_PACKAGE, uri, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        } catch (IllegalArgumentException | SecurityException e) {
+            Log.w(LOG_TAG, "Couldn't let Muzei read " + uri, e);
+            return null;
+        }
+        return uri;
+    }
+
+    /**
+     * Scales a photo down until its shorter side fits the requested size, so it still covers a
+     * screen of that size either way round.  Nothing is cropped, and smaller photos are left be.
+     */
+    static class CoverTransformation extends BitmapTransformation {
+        CoverTransformation(Context context) {
+            super(context);
+        }
+
+        @Override
+        protected Bitmap transform(BitmapPool pool, Bitmap toTransform, int outWidth,
+                                   int outHeight) {
+            float scale = Math.max((float) outWidth / toTransform.getWidth(),
+                    (float) outHeight / toTransform.getHeight());
+            if (scale >= 1) {
+                return toTransform;
+            }
+            return Bitmap.createScaledBitmap(toTransform,
+                    Math.round(toTransform.getWidth() * scale),
+                    Math.round(toTransform.getHeight() * scale),
+                    true);
+        }
+
+        @Override
+        public String getId() {
+            return CoverTransformation.class.getName();
+        }
+    }
+
+    // Drops the least recently written photos past MAX_FILES
+    private static void trim(File directory) {
+        File[] files = directory.listFiles();
+        if (null == files || files.length <= MAX_FILES) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long lhsModified = lhs.lastModified();
+                long rhsModified = rhs.lastModified();
+                return (lhsModified < rhsModified) ? -1 : ((lhsModified == rhsModified) ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < files.length - MAX_FILES; i++) {
+            files[i].delete();
+        }
+    }
+}
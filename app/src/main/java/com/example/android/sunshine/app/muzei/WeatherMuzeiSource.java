@@ -66,14 +66,34 @@ public class WeatherMuzeiSource extends MuzeiArtSource {
             String imageUrl = Utility.getImageUrlForWeatherCondition(weatherId);
             // Only publish a new wallpaper if we have a valid image
             if (imageUrl != null) {
-                publishArtwork(new Artwork.Builder()
-                        .imageUri(Uri.parse(imageUrl))
-                        .title(desc)
-                        .byline(location)
-                        .viewIntent(new Intent(this, MainActivity.class))
-                        .build());
+                publishIfChanged(weatherId, imageUrl, desc, location);
             }
         }
         cursor.close();
     }
+
+    private void publishIfChanged(int weatherId, String imageUrl, String desc, String location) {
+        // The same photo for the same place would only make Muzei load it again
+        String token = weatherId + " " + imageUrl;
+        Artwork current = getCurrentArtwork();
+        Uri cachedUri = MuzeiImageCache.getCachedUri(this, imageUrl);
+        if (current != null && token.equals(current.getToken())
+                && location.equals(current.getByline())
+                && cachedUri != null && cachedUri.equals(current.getImageUri())) {
+            return;
+        }
+
+        // Serve Muzei our copy, scaled to the screen; the original only if we couldn't make one
+        Uri imageUri = (cachedUri != null) ? cachedUri : MuzeiImageCache.getUri(this, imageUrl);
+        if (imageUri == null) {
+            imageUri = Uri.parse(imageUrl);
+        }
+        publishArtwork(new Artwork.Builder()
+                .imageUri(imageUri)
+                .token(token)
+                .title(desc)
+                .byline(location)
+                .viewIntent(new Intent(this, MainActivity.class))
+                .build());
+    }
 }
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.perf;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Measures how long it takes from tapping a day in the list to the detail view's first frame
+ * with that day on it, whether the detail view is a pane next to the list or its own activity.
+ *
+ * All methods are called on the main thread.
+ */
+public class DetailLatencyTimer {
+    public static final String LOG_TAG = DetailLatencyTimer.class.getSimpleName();
+
+    /**
+     * Hook for instrumentation, told about every tap that is timed.
+     */
+    public interface Listener {
+        void onDetailDrawn(long date, long latencyMillis);
+    }
+
+    private static Listener sListener;
+
+    // The day tapped and when, or -1 when there is no tap being timed
+    private static long sTapMillis = -1;
+    private static long sTapDate;
+
+    private static long sLastLatencyMillis = -1;
+
+    public static void setListener(Listener listener) {
+        sListener = listener;
+    }
+
+    /**
+     * Called when a day of the list is tapped.  Replaces any tap still being timed.
+     */
+    public static void onDaySelected(long date) {
+        sTapMillis = SystemClock.uptimeMillis();
+        sTapDate = date;
+    }
+
+    /**
+     * Called when a detail view is about to draw a day.  Only counts for the day last tapped,
+     * and only the first time, so detail views restored or reloaded aren't timed.
+     */
+    public static void onDetailDrawn(long date) {
+        if (sTapMillis < 0 || date != sTapDate) {
+            return;
+        }
+        sLastLatencyMillis = SystemClock.uptimeMillis() - sTapMillis;
+        sTapMillis = -1;
+        Log.i(LOG_TAG, "Tap to detail: " + sLastLatencyMillis + "ms");
+        if (null != sListener) {
+            sListener.onDetailDrawn(date, sLastLatencyMillis);
+        }
+    }
+
+    /**
+     * @return how long the last timed tap took, or -1 if none has finished
+     */
+    public static long getLastLatencyMillis() {
+        return sLastLatencyMillis;
+    }
+}
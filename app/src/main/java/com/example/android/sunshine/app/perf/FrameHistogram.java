@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.perf;
+
+import java.util.Locale;
+
+/**
+ * Counts frame durations in a fixed set of buckets, so recording a frame never allocates.
+ */
+public class FrameHistogram {
+    // Upper bounds of the buckets, in milliseconds; the last bucket takes anything slower
+    static final int[] BUCKET_BOUNDS_MS = {8, 12, 16, 20, 25, 33, 50, 100, 250};
+
+    // Anything longer missed at least one vsync at 60Hz
+    static final long JANK_NANOS = 17 * 1000000L;
+
+    private final int[] mCounts = new int[BUCKET_BOUNDS_MS.length + 1];
+    private int mFrames;
+    private int mJankyFrames;
+    private long mTotalNanos;
+    private long mWorstNanos;
+
+    public void record(long frameNanos) {
+        long millis = frameNanos / 1000000L;
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_MS.length && millis > BUCKET_BOUNDS_MS[bucket]) {
+            bucket++;
+        }
+        mCounts[bucket]++;
+        mFrames++;
+        if (frameNanos > JANK_NANOS) {
+            mJankyFrames++;
+        }
+        mTotalNanos += frameNanos;
+        mWorstNanos = Math.max(mWorstNanos, frameNanos);
+    }
+
+    /**
+     * Adds everything {@code other} counted to this histogram.
+     */
+    void add(FrameHistogram other) {
+        for (int i = 0; i < mCounts.length; i++) {
+            mCounts[i] += other.mCounts[i];
+        }
+        mFrames += other.mFrames;
+        mJankyFrames += other.mJankyFrames;
+        mTotalNanos += other.mTotalNanos;
+        mWorstNanos = Math.max(mWorstNanos, other.mWorstNanos);
+    }
+
+    public int getFrameCount() {
+        return mFrames;
+    }
+
+    public int getJankyFrameCount() {
+        return mJankyFrames;
+    }
+
+    public int getBucketCount(int bucket) {
+        return mCounts[bucket];
+    }
+
+    /**
+     * @return the upper bound of the bucket that the given percentile of frames falls in, in
+     * milliseconds, or -1 for frames slower than the last bound
+     */
+    public int getPercentileMillis(int percentile) {
+        int target = (int) Math.ceil(mFrames * percentile / 100.0);
+        int seen = 0;
+        for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+            seen += mCounts[i];
+            if (seen >= target) {
+                return BUCKET_BOUNDS_MS[i];
+            }
+        }
+        return -1;
+    }
+
+    void appendTo(StringBuilder out) {
+        if (mFrames == 0) {
+            out.append("no frames\n");
+            return;
+        }
+        out.append(String.format(Locale.US,
+                "%d frames, %d janky (%.1f%%), mean %.1fms, worst %dms, p50 %s, p90 %s, p99 %s\n",
+                mFrames, mJankyFrames, 100.0 * mJankyFrames / mFrames,
+                mTotalNanos / 1000000.0 / mFrames, mWorstNanos / 1000000L,
+                formatPercentile(50), formatPercentile(90), formatPercentile(99)));
+        for (int i = 0; i < mCounts.length; i++) {
+            if (mCounts[i] == 0) {
+                continue;
+            }
+            out.append("    ");
+            if (i < BUCKET_BOUNDS_MS.length) {
+                out.append("<=").append(BUCKET_BOUNDS_MS[i]);
+            } else {
+                out.append(">").append(BUCKET_BOUNDS_MS[BUCKET_BOUNDS_MS.length - 1]);
+            }
+            out.append("ms: ").append(mCounts[i]).append('\n');
+        }
+    }
+
+    private String formatPercentile(int percentile) {
+        int millis = getPercentileMillis(percentile);
+        return (millis < 0) ? ">" + BUCKET_BOUNDS_MS[BUCKET_BOUNDS_MS.length - 1] + "ms"
+                : "<=" + millis + "ms";
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.perf;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.Choreographer;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Collects frame times while the user interacts with the forecast, in a {@link FrameHistogram}
+ * per screen and interaction, along with the list rows that were slow to bind.
+ *
+ * Frames are only timed during an interaction, since asking for every frame keeps the display
+ * pipeline awake.  Needs {@link Choreographer}, so on older releases nothing is collected.
+ * All methods are called on the main thread.
+ */
+public class FrameMonitor {
+    public static final String LOG_TAG = FrameMonitor.class.getSimpleName();
+
+    public static final String SCREEN_FORECAST = "forecast";
+    public static final String SCREEN_DETAIL = "detail";
+
+    public static final String INTERACTION_SCROLL = "scroll";
+    public static final String INTERACTION_FLING = "fling";
+    public static final String INTERACTION_TRANSITION = "transition";
+    public static final String INTERACTION_LOADER_SWAP = "loader swap";
+
+    // A bind this long takes a good part of a frame on its own
+    static final long SLOW_BIND_NANOS = 4 * 1000000L;
+
+    // Histograms by screen, then by interaction, in the order they were first seen
+    private static final LinkedHashMap<String, LinkedHashMap<String, FrameHistogram>> sHistograms =
+            new LinkedHashMap<String, LinkedHashMap<String, FrameHistogram>>();
+    // Slow binds by screen and view type: how many, and the slowest
+    private static final LinkedHashMap<String, long[]> sSlowBinds = new LinkedHashMap<String, long[]>();
+
+    private static FrameHistogram sCurrent;
+    private static String sScreen;
+    private static String sInteraction;
+    // Frames left to time, or -1 to time until the interaction ends
+    private static int sFramesLeft = -1;
+    private static long sLastFrameNanos;
+    private static boolean sFramePosted;
+
+    /**
+     * Starts timing frames for an interaction, until {@link #end}.  Replaces whatever
+     * interaction was being timed.
+     */
+    public static void begin(String screen, String interaction) {
+        track(screen, interaction, -1);
+    }
+
+    /**
+     * Times the next {@code frames} frames for an interaction with no clear end, like the
+     * animations after a new list is swapped in.
+     */
+    public static void trackFrames(String screen, String interaction, int frames) {
+        track(screen, interaction, frames);
+    }
+
+    /**
+     * Stops timing an interaction, if it's the one being timed.
+     */
+    public static void end(String screen, String interaction) {
+        if (interaction.equals(sInteraction) && screen.equals(sScreen)) {
+            stop();
+        }
+    }
+
+    /**
+     * Called with how long a list row took to bind.  Only slow binds are kept.
+     */
+    public static void onBind(String screen, String viewType, long bindNanos) {
+        if (bindNanos < SLOW_BIND_NANOS) {
+            return;
+        }
+        String key = screen + " " + viewType;
+        long[] slowBinds = sSlowBinds.get(key);
+        if (null == slowBinds) {
+            slowBinds = new long[2];
+            sSlowBinds.put(key, slowBinds);
+        }
+        slowBinds[0]++;
+        slowBinds[1] = Math.max(slowBinds[1], bindNanos);
+    }
+
+    /**
+     * @return the histogram for a screen and interaction, or null if none of its frames
+     * have been timed
+     */
+    public static FrameHistogram getHistogram(String screen, String interaction) {
+        Map<String, FrameHistogram> histograms = sHistograms.get(screen);
+        return (null == histograms) ? null : histograms.get(interaction);
+    }
+
+    /**
+     * @return everything collected so far, as readable text
+     */
+    public static String dump() {
+        StringBuilder out = new StringBuilder();
+        if (sHistograms.isEmpty()) {
+            out.append("No frames timed yet\n");
+        }
+        for (Map.Entry<String, LinkedHashMap<String, FrameHistogram>> screen : sHistograms.entrySet()) {
+            FrameHistogram total = new FrameHistogram();
+            for (FrameHistogram histogram : screen.getValue().values()) {
+                total.add(histogram);
+            }
+            out.append(screen.getKey()).append(": ");
+            total.appendTo(out);
+            for (Map.Entry<String, FrameHistogram> interaction : screen.getValue().entrySet()) {
+                out.append("  ").append(interaction.getKey()).append(": ");
+                interaction.getValue().appendTo(out);
+            }
+        }
+        for (Map.Entry<String, long[]> slowBinds : sSlowBinds.entrySet()) {
+            out.append(String.format(Locale.US, "slow binds, %s: %d, worst %.1fms\n",
+                    slowBinds.getKey(), slowBinds.getValue()[0],
+                    slowBinds.getValue()[1] / 1000000.0));
+        }
+        return out.toString();
+    }
+
+    public static void reset() {
+        sHistograms.clear();
+        sSlowBinds.clear();
+        if (null != sCurrent) {
+            // Keep timing the interaction in progress, into a fresh histogram
+            sCurrent = getOrCreateHistogram(sScreen, sInteraction);
+        }
+    }
+
+    private static void track(String screen, String interaction, int frames) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            return;
+        }
+        if (null == sCurrent) {
+            // Coming from idle, the first frame only tells us when timing starts
+            sLastFrameNanos = 0;
+            postFrame();
+        }
+        sScreen = screen;
+        sInteraction = interaction;
+        sFramesLeft = frames;
+        sCurrent = getOrCreateHistogram(screen, interaction);
+    }
+
+    private static void stop() {
+        sCurrent = null;
+        sScreen = null;
+        sInteraction = null;
+        sFramesLeft = -1;
+    }
+
+    private static FrameHistogram getOrCreateHistogram(String screen, String interaction) {
+        LinkedHashMap<String, FrameHistogram> histograms = sHistograms.get(screen);
+        if (null == histograms) {
+            histograms = new LinkedHashMap<String, FrameHistogram>();
+            sHistograms.put(screen, histograms);
+        }
+        FrameHistogram histogram = histograms.get(interaction);
+        if (null == histogram) {
+            histogram = new FrameHistogram();
+            histograms.put(interaction, histogram);
+        }
+        return histogram;
+    }
+
+    // Called by the choreographer for every frame while an interaction is timed
+    static void onFrame(long frameTimeNanos) {
+        sFramePosted = false;
+        if (null == sCurrent) {
+            return;
+        }
+        if (0 != sLastFrameNanos) {
+            sCurrent.record(frameTimeNanos - sLastFrameNanos);
+        }
+        sLastFrameNanos = frameTimeNanos;
+        if (sFramesLeft > 0 && --sFramesLeft == 0) {
+            stop();
+            return;
+        }
+        postFrame();
+    }
+
+    private static void postFrame() {
+        // An interaction can end and another begin before the frame we asked for
+        if (!sFramePosted) {
+            sFramePosted = true;
+            FrameCallbacks.post();
+        }
+    }
+
+    // Kept apart so older releases never load a class that refers to Choreographer
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static class FrameCallbacks {
+        private static final Choreographer.FrameCallback sFrameCallback =
+                new Choreographer.FrameCallback() {
+                    @Override
+                    public void doFrame(long frameTimeNanos) {
+                        onFrame(frameTimeNanos);
+                    }
+                };
+
+        static void post() {
+            Choreographer.getInstance().postFrameCallback(sFrameCallback);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.startup;
+
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.IntDef;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs the initialization an activity doesn't need for its first frame once that frame has been
+ * drawn.
+ *
+ * Each step names the steps it depends on and whether it runs on the main thread or in the
+ * background.  A step is started as soon as everything it depends on has finished, so
+ * independent background steps run in parallel.  Steps are added, started and cancelled from
+ * the main thread.
+ */
+public class StartupOrchestrator {
+    public static final String LOG_TAG = StartupOrchestrator.class.getSimpleName();
+
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({THREAD_MAIN, THREAD_BACKGROUND})
+    public @interface StepThread {}
+
+    public static final int THREAD_MAIN = 0;
+    public static final int THREAD_BACKGROUND = 1;
+
+    private static class Step {
+        final String mName;
+        @StepThread final int mThread;
+        final Runnable mWork;
+        final String[] mDependencies;
+        final List<Step> mDependents = new ArrayList<>();
+        int mPendingDependencies;
+        boolean mStarted;
+
+        Step(String name, @StepThread int thread, Runnable work, String[] dependencies) {
+            mName = name;
+            mThread = thread;
+            mWork = work;
+            mDependencies = dependencies;
+        }
+    }
+
+    private final Map<String, Step> mSteps = new LinkedHashMap<>();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Executor mBackgroundExecutor;
+    private volatile boolean mCancelled;
+    private boolean mStarted;
+    private int mUnfinishedSteps;
+
+    public StartupOrchestrator() {
+        this(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    StartupOrchestrator(Executor backgroundExecutor) {
+        mBackgroundExecutor = backgroundExecutor;
+    }
+
+    /**
+     * @param name         unique name of the step, for dependencies and logging
+     * @param thread       where the step runs
+     * @param work         the step itself
+     * @param dependencies names of the steps that have to finish before this one starts
+     * @return this, so steps can be chained
+     */
+    public StartupOrchestrator addStep(String name, @StepThread int thread, Runnable work,
+                                       String... dependencies) {
+        if (mStarted) {
+            throw new IllegalStateException("Steps can't be added once started");
+        }
+        if (mSteps.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicate step: " + name);
+        }
+        mSteps.put(name, new Step(name, thread, work, dependencies));
+        return this;
+    }
+
+    /**
+     * Starts the steps once the view's next frame has been drawn.
+     */
+    public void startAfterFirstDraw(final View view) {
+        view.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                view.getViewTreeObserver().removeOnPreDrawListener(this);
+                // Posted from pre-draw, this runs once the frame is out
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        start();
+                    }
+                });
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Starts the steps now.
+     *
+     * @throws IllegalArgumentException if a step depends on one that doesn't exist, or the
+     *                                  dependencies form a cycle
+     */
+    public void start() {
+        if (mStarted || mCancelled) {
+            return;
+        }
+        mStarted = true;
+        for (Step step : mSteps.values()) {
+            for (String dependency : step.mDependencies) {
+                Step dependsOn = mSteps.get(dependency);
+                if (null == dependsOn) {
+                    throw new IllegalArgumentException("Step " + step.mName +
+                            " depends on unknown step " + dependency);
+                }
+                dependsOn.mDependents.add(step);
+            }
+            step.mPendingDependencies = step.mDependencies.length;
+        }
+        checkForCycles();
+        mUnfinishedSteps = mSteps.size();
+        for (Step step : mSteps.values()) {
+            if (step.mPendingDependencies == 0) {
+                dispatch(step);
+            }
+        }
+    }
+
+    /**
+     * Drops every step that hasn't started yet.  Steps already running finish on their own.
+     */
+    public void cancel() {
+        mCancelled = true;
+        mHandler.removeCallbacksAndMessages(null);
+    }
+
+    /**
+     * @return true once every step has finished
+     */
+    public boolean isFinished() {
+        return mStarted && mUnfinishedSteps == 0;
+    }
+
+    private void checkForCycles() {
+        // Peel off steps with nothing left to wait for; whatever remains is in a cycle
+        Map<Step, Integer> pending = new HashMap<>();
+        List<Step> ready = new ArrayList<>();
+        for (Step step : mSteps.values()) {
+            pending.put(step, step.mDependencies.length);
+            if (step.mDependencies.length == 0) {
+                ready.add(step);
+            }
+        }
+        int visited = 0;
+        while (!ready.isEmpty()) {
+            Step step = ready.remove(ready.size() - 1);
+            visited++;
+            for (Step dependent : step.mDependents) {
+                int left = pending.get(dependent) - 1;
+                pending.put(dependent, left);
+                if (left == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        if (visited != mSteps.size()) {
+            throw new IllegalArgumentException("Startup steps have a dependency cycle");
+        }
+    }
+
+    private void dispatch(final Step step) {
+        step.mStarted = true;
+        Runnable runnable = new Runnable() {
+            @Override
+            public void run() {
+                if (mCancelled) {
+                    return;
+                }
+                long start = SystemClock.uptimeMillis();
+                step.mWork.run();
+                Log.d(LOG_TAG, "Startup step " + step.mName + " took " +
+                        (SystemClock.uptimeMillis() - start) + "ms");
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onStepFinished(step);
+                    }
+                });
+            }
+        };
+        if (step.mThread == THREAD_MAIN) {
+            mHandler.post(runnable);
+        } else {
+            mBackgroundExecutor.execute(runnable);
+        }
+    }
+
+    private void onStepFinished(Step step) {
+        mUnfinishedSteps--;
+        for (Step dependent : step.mDependents) {
+            if (--dependent.mPendingDependencies == 0 && !dependent.mStarted) {
+                dispatch(dependent);
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.startup;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Measures how long it takes to get the first forecast row on screen.
+ *
+ * A cold start is timed from when the process started running our code, a warm start (the
+ * process was already around, or MainActivity is being recreated) from MainActivity's onCreate.
+ * All methods are called on the main thread.
+ */
+public class StartupTimer {
+    public static final String LOG_TAG = StartupTimer.class.getSimpleName();
+
+    // A process started this long before MainActivity was started for something else, like a
+    // sync or a widget update, so the launch is timed as warm
+    private static final long COLD_START_WINDOW_MILLIS = 5000;
+
+    private static long sProcessStartMillis = -1;
+    private static boolean sActivityCreated;
+
+    // Start of the launch being timed, or -1 when there isn't one
+    private static long sLaunchStartMillis = -1;
+    private static boolean sLaunchCold;
+
+    private static long sLastStartMillis = -1;
+    private static boolean sLastStartCold;
+
+    /**
+     * Called by {@link com.example.android.sunshine.app.SunshineApplication} as early as it can.
+     */
+    public static void onProcessStart() {
+        sProcessStartMillis = SystemClock.uptimeMillis();
+    }
+
+    /**
+     * Called at the start of MainActivity's onCreate.
+     */
+    public static void onActivityCreate() {
+        long now = SystemClock.uptimeMillis();
+        sLaunchCold = !sActivityCreated && sProcessStartMillis >= 0 &&
+                now - sProcessStartMillis < COLD_START_WINDOW_MILLIS;
+        sLaunchStartMillis = sLaunchCold ? sProcessStartMillis : now;
+        sActivityCreated = true;
+    }
+
+    /**
+     * Called when the forecast list is about to draw its first rows.  Only the first call after
+     * {@link #onActivityCreate()} counts.
+     */
+    public static void onFirstForecastDrawn() {
+        if (sLaunchStartMillis < 0) {
+            return;
+        }
+        sLastStartMillis = SystemClock.uptimeMillis() - sLaunchStartMillis;
+        sLastStartCold = sLaunchCold;
+        sLaunchStartMillis = -1;
+        Log.i(LOG_TAG, (sLastStartCold ? "Cold" : "Warm") + " start to first forecast: " +
+                sLastStartMillis + "ms");
+    }
+
+    /**
+     * @return how long the last timed launch took, or -1 if none has finished
+     */
+    public static long getLastStartMillis() {
+        return sLastStartMillis;
+    }
+
+    public static boolean isLastStartCold() {
+        return sLastStartCold;
+    }
+}
@@ -30,11 +30,17 @@ import android.text.format.Time;
 import android.util.Log;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.example.android.sunshine.app.BuildConfig;
+import com.example.android.sunshine.app.ForecastSnapshotFile;
 import com.example.android.sunshine.app.MainActivity;
 import com.example.android.sunshine.app.R;
 import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.WeatherPreferences;
 import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.data.WeatherRetention;
+import com.example.android.sunshine.app.gcm.LocationTopics;
+import com.example.android.sunshine.app.gcm.RegistrationIntentService;
 import com.example.android.sunshine.app.muzei.WeatherMuzeiSource;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.api.GoogleApiClient;
@@ -67,10 +73,16 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     public final String LOG_TAG = SunshineSyncAdapter.class.getSimpleName();
     public static final String ACTION_DATA_UPDATED =
             "com.example.android.sunshine.app.ACTION_DATA_UPDATED";
+    // Sync extra for when the weather was already written, as by a pushed forecast delta, and
+    // only the widgets, Muzei, notification and wearable need to catch up
+    public static final String SYNC_EXTRAS_FAN_OUT_ONLY = "fan_out_only";
     // Interval at which to sync with the weather, in seconds.
     // 60 seconds (1 minute) * 180 = 3 hours
     public static final int SYNC_INTERVAL = 60 * 180;
     public static final int SYNC_FLEXTIME = SYNC_INTERVAL/3;
+    // Locations our server pushes forecast deltas for only need polling as a fallback
+    public static final int PUSH_SYNC_INTERVAL = SYNC_INTERVAL * 4;
+    private static final String PREF_SYNC_INTERVAL = "syncInterval";
     private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
     private static final int WEATHER_NOTIFICATION_ID = 3004;
 
@@ -134,6 +146,11 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
         Log.d(LOG_TAG, "Starting sync");
         mGoogleApiClient.connect();
 
+        if (extras.getBoolean(SYNC_EXTRAS_FAN_OUT_ONLY)) {
+            onWeatherChanged();
+            return;
+        }
+
         // We no longer need just the location String, but also potentially the latitude and
         // longitude, in case we are syncing based on a new Place Picker API result.
         Context context = getContext();
@@ -400,15 +417,12 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                 cVVector.toArray(cvArray);
                 getContext().getContentResolver().bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, cvArray);
 
-                // delete old data so we don't build up an endless history
-                getContext().getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI,
-                        WeatherContract.WeatherEntry.COLUMN_DATE + " <= ?",
-                        new String[]{Long.toString(dayTime.setJulianDay(julianStartDay - 1))});
+                onWeatherChanged();
 
-                updateWidgets();
-                updateMuzei();
-                notifyWeather();
-                updateWearable();
+                // the sync may have added a location and retention dropped others, so follow
+                // them with our push topics, and poll at the rate that suits the location
+                RegistrationIntentService.syncTopics(context);
+                updatePeriodicSync(context);
             }
             Log.d(LOG_TAG, "Sync Complete. " + cVVector.size() + " Inserted");
             setLocationStatus(getContext(), LOCATION_STATUS_OK);
@@ -420,6 +434,23 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
         }
     }
 
+    /**
+     * Brings everything that shows the weather outside the app up to date with the database.
+     */
+    private void onWeatherChanged() {
+        updateWidgets();
+        updateMuzei();
+        notifyWeather();
+        updateWearable();
+
+        // now that everything is up to date, trim old data so we don't build up an
+        // endless history
+        applyRetention();
+
+        // and keep the list the app shows on its next start current
+        ForecastSnapshotFile.update(getContext());
+    }
+
     private void updateWidgets() {
         Context context = getContext();
         // Setting the package ensures that only components in our app will receive the broadcast
@@ -489,6 +520,7 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                         largeIcon = Glide.with(context)
                                 .load(artUrl)
                                 .asBitmap()
+                                .diskCacheStrategy(DiskCacheStrategy.ALL)
                                 .error(artResourceId)
                                 .fitCenter()
                                 .into(largeIconWidth, largeIconHeight).get();
@@ -573,6 +605,7 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                 largeIcon = Glide.with(context)
                         .load(artUrl)
                         .asBitmap()
+                        .diskCacheStrategy(DiskCacheStrategy.ALL)
                         .error(artResourceId)
                         .fitCenter()
                         .into(iconSize, iconSize).get();
@@ -643,6 +676,19 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
         return Asset.createFromBytes(byteStream.toByteArray());
     }
 
+    /**
+     * Runs the default retention policy against the weather database, dropping forecasts from
+     * before today and locations that haven't been synced for a while.
+     */
+    private void applyRetention() {
+        Bundle result = getContext().getContentResolver().call(WeatherContract.BASE_CONTENT_URI,
+                WeatherContract.METHOD_APPLY_RETENTION, null, new WeatherRetention().toBundle());
+        if (result != null) {
+            Log.d(LOG_TAG, "Retention reclaimed " +
+                    result.getLong(WeatherRetention.RESULT_BYTES_RECLAIMED) + " bytes");
+        }
+    }
+
     /**
      * Helper method to handle insertion of a new location in the weather database.
      *
@@ -663,9 +709,19 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                 new String[]{locationSetting},
                 null);
 
+        long now = System.currentTimeMillis();
         if (locationCursor.moveToFirst()) {
             int locationIdIndex = locationCursor.getColumnIndex(WeatherContract.LocationEntry._ID);
             locationId = locationCursor.getLong(locationIdIndex);
+
+            // The location is still in use, so keep it from being dropped as stale
+            ContentValues syncedValues = new ContentValues();
+            syncedValues.put(WeatherContract.LocationEntry.COLUMN_LAST_SYNCED, now);
+            getContext().getContentResolver().update(
+                    WeatherContract.LocationEntry.CONTENT_URI,
+                    syncedValues,
+                    WeatherContract.LocationEntry._ID + " = ?",
+                    new String[]{Long.toString(locationId)});
         } else {
             // Now that the content provider is set up, inserting rows of data is pretty simple.
             // First create a ContentValues object to hold the data you want to insert.
@@ -677,6 +733,7 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
             locationValues.put(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING, locationSetting);
             locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LAT, lat);
             locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LONG, lon);
+            locationValues.put(WeatherContract.LocationEntry.COLUMN_LAST_SYNCED, now);
 
             // Finally, insert location data into the database.
             Uri insertedUri = getContext().getContentResolver().insert(
@@ -712,6 +769,23 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
         }
     }
 
+    /**
+     * Helper method to stretch the periodic sync while our server pushes the preferred
+     * location's forecast to us, and to shorten it again when it doesn't
+     * @param context The context used to access the account service
+     */
+    public static void updatePeriodicSync(Context context) {
+        int syncInterval = LocationTopics.hasLiveChannel(context,
+                Utility.getPreferredLocation(context)) ? PUSH_SYNC_INTERVAL : SYNC_INTERVAL;
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        if (prefs.getInt(PREF_SYNC_INTERVAL, SYNC_INTERVAL) != syncInterval) {
+            configurePeriodicSync(context, syncInterval, syncInterval / 3);
+            prefs.edit().putInt(PREF_SYNC_INTERVAL, syncInterval).apply();
+            Log.d(SunshineSyncAdapter.class.getSimpleName(),
+                    "Syncing every " + syncInterval + " seconds");
+        }
+    }
+
     /**
      * Helper method to have the sync adapter sync immediately
      * @param context The context used to access the account service
@@ -724,15 +798,30 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                 context.getString(R.string.content_authority), bundle);
     }
 
+    /**
+     * Helper method to have the sync adapter pass on weather that was written without it, without
+     * fetching the forecast again
+     * @param context The context used to access the account service
+     */
+    public static void fanOutImmediately(Context context) {
+        Bundle bundle = new Bundle();
+        bundle.putBoolean(ContentResolver.SYNC_EXTRAS_EXPEDITED, true);
+        bundle.putBoolean(ContentResolver.SYNC_EXTRAS_MANUAL, true);
+        bundle.putBoolean(SYNC_EXTRAS_FAN_OUT_ONLY, true);
+        ContentResolver.requestSync(getSyncAccount(context),
+                context.getString(R.string.content_authority), bundle);
+    }
+
     /**
      * Helper method to get the fake account to be used with SyncAdapter, or make a new one
      * if the fake account doesn't exist yet.  If we make a new account, we call the
-     * onAccountCreated method so we can initialize things.
+     * onAccountCreated method so we can initialize things.  Synchronized, since MainActivity
+     * initializes the account off the main thread.
      *
      * @param context The context used to access the account service
      * @return a fake account.
      */
-    public static Account getSyncAccount(Context context) {
+    public static synchronized Account getSyncAccount(Context context) {
         // Get an instance of the Android account manager
         AccountManager accountManager =
                 (AccountManager) context.getSystemService(Context.ACCOUNT_SERVICE);
@@ -768,6 +857,8 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
          * Since we've created an account
          */
         SunshineSyncAdapter.configurePeriodicSync(context, SYNC_INTERVAL, SYNC_FLEXTIME);
+        PreferenceManager.getDefaultSharedPreferences(context).edit()
+                .remove(PREF_SYNC_INTERVAL).apply();
 
         /*
          * Without calling setSyncAutomatically, our periodic sync will not be enabled.
@@ -795,5 +886,6 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
         SharedPreferences.Editor spe = sp.edit();
         spe.putInt(c.getString(R.string.pref_location_status_key), locationStatus);
         spe.commit();
+        WeatherPreferences.refresh(c);
     }
 }
\ No newline at end of file
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.widget;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.data.WeatherContract;
+
+/**
+ * The rows of the detail widget, copied out of the cursor and formatted when the data set
+ * changes, so the cursor can be closed right away and building a row only assembles views.
+ * Never changes once built.
+ */
+class DetailWidgetRows {
+    static final DetailWidgetRows EMPTY = new DetailWidgetRows(0);
+
+    final long[] mIds;
+    final int[] mWeatherIds;
+    final String[] mDateTexts;
+    final String[] mDescriptions;
+    final String[] mHighTexts;
+    final String[] mLowTexts;
+    // What tapping each row opens
+    final Uri[] mUris;
+
+    private DetailWidgetRows(int count) {
+        mIds = new long[count];
+        mWeatherIds = new int[count];
+        mDateTexts = new String[count];
+        mDescriptions = new String[count];
+        mHighTexts = new String[count];
+        mLowTexts = new String[count];
+        mUris = new Uri[count];
+    }
+
+    /**
+     * Copies every row of a cursor using the widget's projection.  The cursor is left open.
+     */
+    static DetailWidgetRows fromCursor(Context context, Cursor cursor, String locationSetting) {
+        if (cursor == null || cursor.getCount() == 0) {
+            return EMPTY;
+        }
+        DetailWidgetRows rows = new DetailWidgetRows(cursor.getCount());
+        for (int i = 0; cursor.moveToPosition(i); i++) {
+            long date = cursor.getLong(DetailWidgetRemoteViewsService.INDEX_WEATHER_DATE);
+            rows.mIds[i] = cursor.getLong(DetailWidgetRemoteViewsService.INDEX_WEATHER_ID);
+            rows.mWeatherIds[i] =
+                    cursor.getInt(DetailWidgetRemoteViewsService.INDEX_WEATHER_CONDITION_ID);
+            rows.mDateTexts[i] = Utility.getFriendlyDayString(context, date, false);
+            rows.mDescriptions[i] =
+                    cursor.getString(DetailWidgetRemoteViewsService.INDEX_WEATHER_DESC);
+            rows.mHighTexts[i] = Utility.formatTemperature(context,
+                    cursor.getDouble(DetailWidgetRemoteViewsService.INDEX_WEATHER_MAX_TEMP));
+            rows.mLowTexts[i] = Utility.formatTemperature(context,
+                    cursor.getDouble(DetailWidgetRemoteViewsService.INDEX_WEATHER_MIN_TEMP));
+            rows.mUris[i] = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(
+                    locationSetting, date);
+        }
+        return rows;
+    }
+
+    int size() {
+        return mIds.length;
+    }
+}
@@ -26,6 +26,7 @@ import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.util.DisplayMetrics;
+import android.util.SparseArray;
 import android.util.TypedValue;
 import android.widget.RemoteViews;
 
@@ -34,8 +35,11 @@ import com.example.android.sunshine.app.R;
 import com.example.android.sunshine.app.Utility;
 import com.example.android.sunshine.app.data.WeatherContract;
 
+import java.util.ArrayList;
+
 /**
- * IntentService which handles updating all Today widgets with the latest data
+ * IntentService which handles updating all Today widgets with the latest data.  Widgets that
+ * already show it are left alone, and widgets of the same size share one set of views.
  */
 public class TodayWidgetIntentService extends IntentService {
     private static final String[] FORECAST_COLUMNS = {
@@ -50,16 +54,35 @@ public class TodayWidgetIntentService extends IntentService {
     private static final int INDEX_MAX_TEMP = 2;
     private static final int INDEX_MIN_TEMP = 3;
 
+    /**
+     * Set on updates the system asks for, such as for a newly added widget, which have to
+     * push views even when nothing changed.
+     */
+    static final String EXTRA_FORCE_UPDATE = "force_update";
+
+    // What each widget was last sent, by widget id
+    private static final SparseArray<String> sFingerprints = new SparseArray<String>();
+
     public TodayWidgetIntentService() {
         super("TodayWidgetIntentService");
     }
 
+    /**
+     * Forgets what was sent to widgets that have been removed.
+     */
+    static synchronized void forgetWidgets(int[] appWidgetIds) {
+        for (int appWidgetId : appWidgetIds) {
+            sFingerprints.delete(appWidgetId);
+        }
+    }
+
     @Override
     protected void onHandleIntent(Intent intent) {
         // Retrieve all of the Today widget ids: these are the widgets we need to update
         AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(this);
         int[] appWidgetIds = appWidgetManager.getAppWidgetIds(new ComponentName(this,
                 TodayWidgetProvider.class));
+        boolean force = intent != null && intent.getBooleanExtra(EXTRA_FORCE_UPDATE, false);
 
         // Get today's data from the ContentProvider
         String location = Utility.getPreferredLocation(this);
@@ -85,21 +108,33 @@ public class TodayWidgetIntentService extends IntentService {
         String formattedMinTemperature = Utility.formatTemperature(this, minTemp);
         data.close();
 
-        // Perform this loop procedure for each Today widget
-        for (int appWidgetId : appWidgetIds) {
-            // Find the correct layout based on the widget's width
-            int widgetWidth = getWidgetWidth(appWidgetManager, appWidgetId);
-            int defaultWidth = getResources().getDimensionPixelSize(R.dimen.widget_today_default_width);
-            int largeWidth = getResources().getDimensionPixelSize(R.dimen.widget_today_large_width);
-            int layoutId;
-            if (widgetWidth >= largeWidth) {
-                layoutId = R.layout.widget_today_large;
-            } else if (widgetWidth >= defaultWidth) {
-                layoutId = R.layout.widget_today;
-            } else {
-                layoutId = R.layout.widget_today_small;
+        // Everything the views show besides the layout
+        String dataFingerprint = weatherId + "|" + description + "|" + formattedMaxTemperature +
+                "|" + formattedMinTemperature + "|" + Utility.isMetric(this);
+
+        // Group the widgets that need new views by layout, so each layout is built once
+        SparseArray<ArrayList<Integer>> widgetsByLayout = new SparseArray<ArrayList<Integer>>();
+        synchronized (TodayWidgetIntentService.class) {
+            for (int appWidgetId : appWidgetIds) {
+                int layoutId = getLayoutId(appWidgetManager, appWidgetId);
+                String fingerprint = layoutId + "|" + dataFingerprint;
+                if (!force && fingerprint.equals(sFingerprints.get(appWidgetId))) {
+                    // The widget already shows exactly this
+                    WidgetUpdateScheduler.onUpdatesSkipped(1);
+                    continue;
+                }
+                sFingerprints.put(appWidgetId, fingerprint);
+                ArrayList<Integer> widgets = widgetsByLayout.get(layoutId);
+                if (widgets == null) {
+                    widgets = new ArrayList<Integer>();
+                    widgetsByLayout.put(layoutId, widgets);
+                }
+                widgets.add(appWidgetId);
             }
-            RemoteViews views = new RemoteViews(getPackageName(), layoutId);
+        }
+
+        for (int i = 0; i < widgetsByLayout.size(); i++) {
+            RemoteViews views = new RemoteViews(getPackageName(), widgetsByLayout.keyAt(i));
 
             // Add the data to the RemoteViews
             views.setImageViewResource(R.id.widget_icon, weatherArtResourceId);
@@ -116,8 +151,27 @@ public class TodayWidgetIntentService extends IntentService {
             PendingIntent pendingIntent = PendingIntent.getActivity(this, 0, launchIntent, 0);
             views.setOnClickPendingIntent(R.id.widget, pendingIntent);
 
-            // Tell the AppWidgetManager to perform an update on the current app widget
-            appWidgetManager.updateAppWidget(appWidgetId, views);
+            // Tell the AppWidgetManager to perform an update on every widget of this size
+            ArrayList<Integer> widgets = widgetsByLayout.valueAt(i);
+            int[] ids = new int[widgets.size()];
+            for (int j = 0; j < ids.length; j++) {
+                ids[j] = widgets.get(j);
+            }
+            appWidgetManager.updateAppWidget(ids, views);
+        }
+    }
+
+    // Find the correct layout based on the widget's width
+    private int getLayoutId(AppWidgetManager appWidgetManager, int appWidgetId) {
+        int widgetWidth = getWidgetWidth(appWidgetManager, appWidgetId);
+        int defaultWidth = getResources().getDimensionPixelSize(R.dimen.widget_today_default_width);
+        int largeWidth = getResources().getDimensionPixelSize(R.dimen.widget_today_large_width);
+        if (widgetWidth >= largeWidth) {
+            return R.layout.widget_today_large;
+        } else if (widgetWidth >= defaultWidth) {
+            return R.layout.widget_today;
+        } else {
+            return R.layout.widget_today_small;
         }
     }
 
@@ -28,26 +28,36 @@ import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
  * Provider for a horizontally expandable widget showing today's weather.
  *
  * Delegates widget updating to {@link TodayWidgetIntentService} to ensure that
- * data retrieval is done on a background thread
+ * data retrieval is done on a background thread, through the {@link WidgetUpdateScheduler}
+ * so updates asked for together are done once
  */
 public class TodayWidgetProvider extends AppWidgetProvider {
 
     @Override
     public void onUpdate(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
-        context.startService(new Intent(context, TodayWidgetIntentService.class));
+        // The system asked, so send views even if we think the widgets have them already
+        WidgetUpdateScheduler.requestUpdate(context, WidgetUpdateScheduler.WIDGET_TODAY, true,
+                goAsync());
+    }
+
+    @Override
+    public void onDeleted(Context context, int[] appWidgetIds) {
+        TodayWidgetIntentService.forgetWidgets(appWidgetIds);
     }
 
     @Override
     public void onAppWidgetOptionsChanged(Context context, AppWidgetManager appWidgetManager,
                                           int appWidgetId, Bundle newOptions) {
-        context.startService(new Intent(context, TodayWidgetIntentService.class));
+        WidgetUpdateScheduler.requestUpdate(context, WidgetUpdateScheduler.WIDGET_TODAY, false,
+                goAsync());
     }
 
     @Override
     public void onReceive(@NonNull Context context, @NonNull Intent intent) {
         super.onReceive(context, intent);
         if (SunshineSyncAdapter.ACTION_DATA_UPDATED.equals(intent.getAction())) {
-            context.startService(new Intent(context, TodayWidgetIntentService.class));
+            WidgetUpdateScheduler.requestUpdate(context, WidgetUpdateScheduler.WIDGET_TODAY, false,
+                    goAsync());
         }
     }
 }
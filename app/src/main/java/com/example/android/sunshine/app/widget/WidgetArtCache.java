@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.widget;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.example.android.sunshine.app.WeatherCondition;
+import com.example.android.sunshine.app.WeatherPreferences;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * The art pack's images, decoded at the size a widget shows them and shared by all of its rows.
+ *
+ * Every row with the same weather shows the same bitmap, so a forecast needs a handful of
+ * decodes at most, and only again once the art pack changes.  The cache has a fixed budget in
+ * bytes; an image that doesn't fit is simply decoded again the next time.
+ */
+public class WidgetArtCache {
+    public static final String LOG_TAG = WidgetArtCache.class.getSimpleName();
+
+    // Room for every image of a pack at list icon size on an xxxhdpi screen
+    static final int MAX_BYTES = 1024 * 1024;
+
+    private static final LruCache<String, Bitmap> sCache = new LruCache<String, Bitmap>(MAX_BYTES) {
+        @Override
+        protected int sizeOf(String key, Bitmap bitmap) {
+            return bitmap.getByteCount();
+        }
+    };
+    // The art pack the cached images come from
+    private static String sArtPack;
+
+    /**
+     * Decodes the art for each of {@code weatherIds} that isn't cached yet.  Blocks on the
+     * network or disk, so call it from a widget's data loading, never the main thread.
+     */
+    public static void fill(Context context, int[] weatherIds, int sizePx) {
+        String artPack = WeatherPreferences.get(context).mArtPack;
+        for (int weatherId : weatherIds) {
+            String url = WeatherCondition.get(weatherId).getArtUrl(artPack);
+            String key = getKey(url, sizePx);
+            if (null != peek(artPack, key)) {
+                continue;
+            }
+            try {
+                Bitmap bitmap = Glide.with(context)
+                        .load(url)
+                        .asBitmap()
+                        .diskCacheStrategy(DiskCacheStrategy.ALL)
+                        .fitCenter()
+                        .into(sizePx, sizePx)
+                        .get();
+                put(artPack, key, bitmap);
+            } catch (InterruptedException | ExecutionException e) {
+                Log.e(LOG_TAG, "Error retrieving widget art from " + url, e);
+            }
+        }
+    }
+
+    /**
+     * @return the art for a weather condition from the current art pack, or null if
+     * {@link #fill} hasn't decoded it.  Never blocks.
+     */
+    public static Bitmap get(Context context, int weatherId, int sizePx) {
+        String artPack = WeatherPreferences.get(context).mArtPack;
+        return peek(artPack, getKey(WeatherCondition.get(weatherId).getArtUrl(artPack), sizePx));
+    }
+
+    private static String getKey(String url, int sizePx) {
+        return sizePx + " " + url;
+    }
+
+    private static synchronized Bitmap peek(String artPack, String key) {
+        if (!artPack.equals(sArtPack)) {
+            // Images from the old pack will never be asked for again
+            sCache.evictAll();
+            sArtPack = artPack;
+            return null;
+        }
+        return sCache.get(key);
+    }
+
+    private static synchronized void put(String artPack, String key, Bitmap bitmap) {
+        if (artPack.equals(sArtPack)) {
+            sCache.put(key, bitmap);
+        }
+    }
+
+    static synchronized int getCachedBytes() {
+        return sCache.size();
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.widget;
+
+import android.annotation.TargetApi;
+import android.appwidget.AppWidgetManager;
+import android.content.BroadcastReceiver;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.android.sunshine.app.R;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Merges the widget updates asked for within a short window into one pass over all our widgets.
+ *
+ * A sync broadcasts to every provider at once, and resizing a widget or placing one can follow
+ * right behind, so updates tend to come in bursts.  Receivers hand over their
+ * {@link BroadcastReceiver.PendingResult} so the process is kept around until the pass is done.
+ * Requests are made on the main thread.
+ */
+public class WidgetUpdateScheduler {
+    public static final String LOG_TAG = WidgetUpdateScheduler.class.getSimpleName();
+
+    public static final int WIDGET_TODAY = 1;
+    public static final int WIDGET_DETAIL = 1 << 1;
+
+    // Well under the ten seconds a receiver may take
+    static final long WINDOW_MS = 500;
+
+    private static final Handler sHandler = new Handler(Looper.getMainLooper());
+
+    private static Context sContext;
+    // The widget types waiting for the next pass
+    private static int sPendingWidgets;
+    private static boolean sPendingForce;
+    private static final ArrayList<BroadcastReceiver.PendingResult> sPendingResults =
+            new ArrayList<BroadcastReceiver.PendingResult>();
+
+    private static final AtomicInteger sRequested = new AtomicInteger();
+    private static final AtomicInteger sCoalesced = new AtomicInteger();
+    private static final AtomicInteger sSkipped = new AtomicInteger();
+    private static final AtomicInteger sPasses = new AtomicInteger();
+
+    private static final Runnable sFlush = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    /**
+     * Asks for an update of some widget types.
+     *
+     * @param widgets {@link #WIDGET_TODAY} and/or {@link #WIDGET_DETAIL}
+     * @param force   true to send views even to widgets that should already show the latest
+     *                data, as when the system asks
+     * @param result  from the calling receiver's goAsync(), finished after the pass; or null
+     */
+    public static void requestUpdate(Context context, int widgets, boolean force,
+                                     BroadcastReceiver.PendingResult result) {
+        sRequested.incrementAndGet();
+        if (0 == sPendingWidgets) {
+            sContext = context.getApplicationContext();
+            sHandler.postDelayed(sFlush, WINDOW_MS);
+        } else {
+            sCoalesced.incrementAndGet();
+        }
+        sPendingWidgets |= widgets;
+        sPendingForce |= force;
+        if (null != result) {
+            sPendingResults.add(result);
+        }
+    }
+
+    /**
+     * Called by the widget services for updates they found they could leave out.
+     */
+    static void onUpdatesSkipped(int count) {
+        sSkipped.addAndGet(count);
+    }
+
+    private static void flush() {
+        int widgets = sPendingWidgets;
+        boolean force = sPendingForce;
+        sPendingWidgets = 0;
+        sPendingForce = false;
+        sPasses.incrementAndGet();
+        try {
+            if (0 != (widgets & WIDGET_TODAY)) {
+                sContext.startService(new Intent(sContext, TodayWidgetIntentService.class)
+                        .putExtra(TodayWidgetIntentService.EXTRA_FORCE_UPDATE, force));
+            }
+            if (0 != (widgets & WIDGET_DETAIL)
+                    && Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+                notifyDetailWidgets(sContext);
+            }
+        } finally {
+            for (BroadcastReceiver.PendingResult result : sPendingResults) {
+                result.finish();
+            }
+            sPendingResults.clear();
+        }
+        Log.d(LOG_TAG, "Widget updates: " + sRequested.get() + " requested, " +
+                sCoalesced.get() + " coalesced, " + sSkipped.get() + " skipped, in " +
+                sPasses.get() + " passes");
+    }
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static void notifyDetailWidgets(Context context) {
+        AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
+        int[] appWidgetIds = appWidgetManager.getAppWidgetIds(
+                new ComponentName(context, DetailWidgetProvider.class));
+        if (appWidgetIds.length > 0) {
+            appWidgetManager.notifyAppWidgetViewDataChanged(appWidgetIds, R.id.widget_list);
+        }
+    }
+
+    /**
+     * @return how many updates have been asked for
+     */
+    public static int getRequestedCount() {
+        return sRequested.get();
+    }
+
+    /**
+     * @return how many requests were merged into a pass another request had already scheduled
+     */
+    public static int getCoalescedCount() {
+        return sCoalesced.get();
+    }
+
+    /**
+     * @return how many widget updates were left out because the widget already showed the data
+     */
+    public static int getSkippedCount() {
+        return sSkipped.get();
+    }
+
+    /**
+     * @return how many passes over the widgets have run
+     */
+    public static int getPassCount() {
+        return sPasses.get();
+    }
+}
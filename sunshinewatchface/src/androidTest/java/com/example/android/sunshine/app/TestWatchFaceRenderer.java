@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Debug;
+import android.test.AndroidTestCase;
+
+import java.util.Calendar;
+
+/*
+    Draws the watch face onto an offscreen canvas, checking the time and date it shows, that
+    a steady stream of frames allocates nothing, and that the layer under the time is only drawn
+    again when something on it changes.
+ */
+public class TestWatchFaceRenderer extends AndroidTestCase {
+
+    private static final int SIZE = 320;
+
+    private WatchFaceRenderer mRenderer;
+    private Bitmap mBitmap;
+    private Canvas mCanvas;
+    private Rect mBounds;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mRenderer = new WatchFaceRenderer(mContext.getResources());
+        mRenderer.setRound(mContext.getResources(), true);
+        mRenderer.mHigh = "25°";
+        mRenderer.mLow = "16°";
+        mRenderer.mWeatherIcon = Bitmap.createBitmap(60, 60, Bitmap.Config.ARGB_8888);
+        mBitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        mCanvas = new Canvas(mBitmap);
+        mBounds = new Rect(0, 0, SIZE, SIZE);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mRenderer.release();
+        mBitmap.recycle();
+        mRenderer.mWeatherIcon.recycle();
+        super.tearDown();
+    }
+
+    public void testTimeText() {
+        assertEquals("12:05", drawAt(0, 5).getTimeText());
+        assertEquals("9:30", drawAt(9, 30).getTimeText());
+        assertEquals("1:07", drawAt(13, 7).getTimeText());
+        assertEquals("11:59", drawAt(23, 59).getTimeText());
+    }
+
+    public void testDateOnlyRebuiltWhenDayChanges() {
+        String date = drawAt(9, 30).getDateText();
+        assertSame(date, drawAt(17, 45).getDateText());
+
+        Calendar calendar = at(9, 30);
+        calendar.add(Calendar.DAY_OF_YEAR, 1);
+        mRenderer.draw(mCanvas, mBounds, calendar.getTimeInMillis(), false, false);
+        assertFalse(date.equals(mRenderer.getDateText()));
+    }
+
+    public void testSteadyStateDrawDoesNotAllocate() {
+        long minuteStart = at(10, 10).getTimeInMillis();
+        // The first frame of a minute builds its time, and the first of a mode its layer; the
+        // rest only draw
+        mRenderer.draw(mCanvas, mBounds, minuteStart, true, false);
+        mRenderer.draw(mCanvas, mBounds, minuteStart, false, false);
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        for (int second = 1; second < 60; second++) {
+            mRenderer.draw(mCanvas, mBounds, minuteStart + second * 1000, false, false);
+        }
+        mRenderer.draw(mCanvas, mBounds, minuteStart + 59 * 1000, true, false);
+        Debug.stopAllocCounting();
+        assertEquals(0, Debug.getThreadAllocCount());
+    }
+
+    public void testLayerOnlyDrawnWhenInvalidated() {
+        long minuteStart = at(10, 10).getTimeInMillis();
+        for (int second = 0; second < 60; second++) {
+            mRenderer.draw(mCanvas, mBounds, minuteStart + second * 1000, false, false);
+        }
+        // A new minute only changes the time
+        mRenderer.draw(mCanvas, mBounds, minuteStart + 60 * 1000, false, false);
+        assertEquals(1, mRenderer.mLayerDraws);
+
+        mRenderer.mHigh = "27°";
+        mRenderer.invalidateLayers();
+        mRenderer.draw(mCanvas, mBounds, minuteStart, false, false);
+        mRenderer.draw(mCanvas, mBounds, minuteStart, false, false);
+        assertEquals(2, mRenderer.mLayerDraws);
+
+        mRenderer.draw(mCanvas, mBounds, minuteStart, false, true);
+        assertEquals(3, mRenderer.mLayerDraws);
+    }
+
+    public void testModesHaveTheirOwnLayers() {
+        long minuteStart = at(10, 10).getTimeInMillis();
+        mRenderer.draw(mCanvas, mBounds, minuteStart, false, false);
+        mRenderer.draw(mCanvas, mBounds, minuteStart, true, false);
+        mRenderer.setLowBitAmbient(true);
+        mRenderer.draw(mCanvas, mBounds, minuteStart, true, false);
+        assertEquals(3, mRenderer.mLayerDraws);
+
+        // Going back and forth between modes reuses their layers
+        mRenderer.draw(mCanvas, mBounds, minuteStart, false, false);
+        mRenderer.draw(mCanvas, mBounds, minuteStart, true, false);
+        mRenderer.setLowBitAmbient(false);
+        mRenderer.draw(mCanvas, mBounds, minuteStart, true, false);
+        assertEquals(3, mRenderer.mLayerDraws);
+        // Ambient text is only anti-aliased on displays with every bit
+        assertTrue(mRenderer.mTimeTextPaint.isAntiAlias());
+    }
+
+    private WatchFaceRenderer drawAt(int hourOfDay, int minute) {
+        mRenderer.draw(mCanvas, mBounds, at(hourOfDay, minute).getTimeInMillis(), false, false);
+        return mRenderer;
+    }
+
+    private static Calendar at(int hourOfDay, int minute) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(Calendar.HOUR_OF_DAY, hourOfDay);
+        calendar.set(Calendar.MINUTE, minute);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar;
+    }
+}
@@ -21,13 +21,9 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.res.Resources;
-import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
 import android.graphics.Rect;
-import android.graphics.Typeface;
 import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Handler;
@@ -48,10 +44,6 @@ import com.google.android.gms.wearable.Wearable;
 
 import java.io.InputStream;
 import java.lang.ref.WeakReference;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Locale;
-import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 
 /*
@@ -59,9 +51,6 @@ Digital watch face that displays weather data.
  */
 
 public class SunshineWatchFaceService extends CanvasWatchFaceService {
-    private static final Typeface NORMAL_TYPEFACE =
-            Typeface.create(Typeface.SANS_SERIF, Typeface.NORMAL);
-
     /**
      * Update rate in milliseconds for interactive mode. We update once a second since seconds are
      * displayed in interactive mode.
@@ -105,26 +94,16 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
     private class Engine extends CanvasWatchFaceService.Engine {
         final Handler mUpdateTimeHandler = new EngineHandler(this);
         boolean mRegisteredReceivers = false;
-        Paint mBackgroundPaint;
-        Paint mTimeTextPaint;
-        Paint mDateTextPaint;
-        Paint mBoldTextPaint;
-        Paint mLowTextPaint;
-        Paint mHighTextPaint;
+        WatchFaceRenderer mRenderer;
         boolean mAmbient;
-        Calendar mCalendar;
-        SimpleDateFormat mDateFormat;
-        final Typeface BOLD_TYPEFACE =
-                Typeface.create(Typeface.SANS_SERIF, Typeface.BOLD);
-        final Typeface NORMAL_TYPEFACE =
-                Typeface.create(Typeface.SANS_SERIF, Typeface.NORMAL);
+        // Kept up to date by onPeekCardPositionUpdate, so drawing needn't ask for the position
+        boolean mPeekCardShown;
 
         final BroadcastReceiver mTimeZoneReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
                 Log.d(LOG_TAG, "got broadcast:  " + intent.getAction());
-                mCalendar.setTimeZone(TimeZone.getDefault());
-                initFormats();
+                mRenderer.onTimeZoneChanged();
                 invalidate();
             }
         };
@@ -134,37 +113,24 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
             public void onReceive(Context context, Intent intent) {
                 Log.d(LOG_TAG, "Got broadcast event:  " + intent.getAction());
                 if (intent.hasExtra(ICON)) {
-                    weatherIcon = intent.getParcelableExtra(ICON);
+                    mRenderer.mWeatherIcon = intent.getParcelableExtra(ICON);
                 }
                 if (intent.hasExtra(HIGH)) {
-                    high = intent.getStringExtra(HIGH);
+                    mRenderer.mHigh = intent.getStringExtra(HIGH);
                 }
                 if (intent.hasExtra(LOW)) {
-                    low = intent.getStringExtra(LOW);
+                    mRenderer.mLow = intent.getStringExtra(LOW);
                 }
                 if (intent.hasExtra(DESC)) {
-                    mWeatherString = intent.getStringExtra(DESC);
+                    mRenderer.mWeatherString = intent.getStringExtra(DESC);
                 }
+                mRenderer.invalidateLayers();
                 Log.d(LOG_TAG, "Updated from weather data!");
                 invalidate();
             }
         };
         int mTapCount;
 
-        float mTimeXOffset;
-        float mTimeYOffset;
-        float mDateYOffset;
-        float mWeatherYOffset;
-        float mLineHeight;
-        float mHighXOffset;
-        float mLowXOffset;
-        float mDateXOffset;
-        String mWeatherString;
-        String high;
-        String low;
-        Bitmap weatherIcon;
-        Rect weatherIconRect;
-
         private static final String DESC = "com.example.android.sunshine.app.desc";
         private static final String HIGH = "com.example.android.sunshine.app.high";
         private static final String LOW = "com.example.android.sunshine.app.low";
@@ -187,55 +153,20 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
                     .setAcceptsTapEvents(true)
                     .build());
 
-            Resources resources = SunshineWatchFaceService.this.getResources();
-            mTimeYOffset = resources.getDimension(R.dimen.time_y_offset);
-            mWeatherYOffset = resources.getDimension(R.dimen.weather_y_offset);
-            mLineHeight = resources.getDimension(R.dimen.time_line_height);
-            mDateYOffset = resources.getDimension(R.dimen.date_y_offset);
-            mHighXOffset = resources.getDimension(R.dimen.weather_y_offset);
-            mLowXOffset = resources.getDimension(R.dimen.weather_y_offset);
-            mBackgroundPaint = new Paint();
-            mBackgroundPaint.setColor(resources.getColor(R.color.background));
-            mTimeTextPaint = createTextPaint(resources.getColor(R.color.digital_text), NORMAL_TYPEFACE);
-            mDateTextPaint = createTextPaint(resources.getColor(R.color.digital_text), NORMAL_TYPEFACE);
-            mBoldTextPaint = createTextPaint(resources.getColor(R.color.digital_text), BOLD_TYPEFACE);
-            mLowTextPaint = createTextPaint(resources.getColor(R.color.digital_text), NORMAL_TYPEFACE);
-            mHighTextPaint = createTextPaint(resources.getColor(R.color.digital_text), BOLD_TYPEFACE);
-            int weatherIconSize = 60;
-            int weatherIconLeft = 55;
-            int weatherIconTop = 210;
-            weatherIconRect = new Rect(
-                    weatherIconLeft,
-                    weatherIconTop,
-                    weatherIconLeft + weatherIconSize,
-                    weatherIconTop + weatherIconSize);
-            mCalendar = Calendar.getInstance();
-            initFormats();
+            mRenderer = new WatchFaceRenderer(SunshineWatchFaceService.this.getResources());
 
             IntentFilter mFilter = new IntentFilter(SunshineWearableListenerService.UPDATE_ACTION);
             LocalBroadcastManager.getInstance(getApplicationContext())
                     .registerReceiver(mWeatherUpdateReceiver, mFilter);
         }
 
-        private void initFormats() {
-            mDateFormat = new SimpleDateFormat("EE, MMM dd yyyy", Locale.getDefault());
-            mDateFormat.setCalendar(mCalendar);
-        }
-
         @Override
         public void onDestroy() {
             mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
+            mRenderer.release();
             super.onDestroy();
         }
 
-        private Paint createTextPaint(int textColor, Typeface typeface) {
-            Paint paint = new Paint();
-            paint.setColor(textColor);
-            paint.setTypeface(typeface);
-            paint.setAntiAlias(true);
-            return paint;
-        }
-
         @Override
         public void onVisibilityChanged(boolean visible) {
             super.onVisibilityChanged(visible);
@@ -243,8 +174,7 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
             if (visible) {
                 registerReceiver();
                 // Update time zone in case it changed while we weren't visible.
-                mCalendar.setTimeZone(TimeZone.getDefault());
-                initFormats();
+                mRenderer.onTimeZoneChanged();
             } else {
                 unregisterReceiver();
             }
@@ -276,33 +206,21 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
         public void onApplyWindowInsets(WindowInsets insets) {
             super.onApplyWindowInsets(insets);
             // Load resources that have alternate values for round watches.
-            Resources resources = SunshineWatchFaceService.this.getResources();
-            boolean isRound = insets.isRound();
-            mTimeXOffset = resources.getDimension(isRound
-                    ? R.dimen.time_x_offset_round : R.dimen.time_x_offset_square);
-            mHighXOffset = resources.getDimension(isRound
-                    ? R.dimen.high_x_offset_round : R.dimen.high_x_offset_square);
-            mLowXOffset = resources.getDimension(isRound
-                    ? R.dimen.low_x_offset_round : R.dimen.low_x_offset_square);
-            mDateXOffset = resources.getDimension(isRound
-                    ? R.dimen.date_x_offset_round : R.dimen.date_x_offset_square);
-            float timeTextSize = resources.getDimension(isRound
-                    ? R.dimen.time_text_size_round : R.dimen.time_text_size_square);
-            float dateTextSize = resources.getDimension(isRound
-                    ? R.dimen.date_text_size_round : R.dimen.date_text_size_square);
-            float temperatureTextSize = resources.getDimension(isRound
-                    ? R.dimen.temperature_text_size_round : R.dimen.temperature_text_size_square);
-
-            mTimeTextPaint.setTextSize(timeTextSize);
-            mDateTextPaint.setTextSize(dateTextSize);
-            mHighTextPaint.setTextSize(temperatureTextSize);
-            mLowTextPaint.setTextSize(temperatureTextSize);
+            mRenderer.setRound(SunshineWatchFaceService.this.getResources(), insets.isRound());
+        }
+
+        @Override
+        public void onPeekCardPositionUpdate(Rect rect) {
+            super.onPeekCardPositionUpdate(rect);
+            mPeekCardShown = !rect.isEmpty();
+            invalidate();
         }
 
         @Override
         public void onPropertiesChanged(Bundle properties) {
             super.onPropertiesChanged(properties);
             mLowBitAmbient = properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false);
+            mRenderer.setLowBitAmbient(mLowBitAmbient);
         }
 
         @Override
@@ -316,9 +234,6 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
             super.onAmbientModeChanged(inAmbientMode);
             if (mAmbient != inAmbientMode) {
                 mAmbient = inAmbientMode;
-                if (mLowBitAmbient) {
-                    mTimeTextPaint.setAntiAlias(!inAmbientMode);
-                }
                 invalidate();
             }
 
@@ -344,8 +259,9 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
                 case TAP_TYPE_TAP:
                     // The user has completed the tap gesture.
                     mTapCount++;
-                    mBackgroundPaint.setColor(resources.getColor(mTapCount % 2 == 0 ?
+                    mRenderer.mBackgroundPaint.setColor(resources.getColor(mTapCount % 2 == 0 ?
                             R.color.background : R.color.background2));
+                    mRenderer.invalidateLayers();
                     break;
             }
             invalidate();
@@ -353,36 +269,8 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
 
         @Override
         public void onDraw(Canvas canvas, Rect bounds) {
-            long now = System.currentTimeMillis();
-            mCalendar.setTimeInMillis(now);
-
-            // Draw the background.
-            if (isInAmbientMode()) {
-                canvas.drawColor(Color.BLACK);
-            } else {
-                canvas.drawRect(0, 0, bounds.width(), bounds.height(), mBackgroundPaint);
-            }
-            canvas.drawRect(0, 0, 5, 5, mTimeTextPaint);
-
-            int hour = mCalendar.get(Calendar.HOUR);
-            int minute = mCalendar.get(Calendar.MINUTE);
-            if (hour == 0) {
-                hour = 12;
-            }
-            String timeText = String.format(Locale.getDefault(), "%d:%02d", hour, minute);
-            canvas.drawText(timeText, mTimeXOffset, mTimeYOffset, mTimeTextPaint);
-            String calendarText = mDateFormat.format(mCalendar.getTime());
-            canvas.drawText(calendarText, mDateXOffset, mDateYOffset, mDateTextPaint);
-
-            if (getPeekCardPosition().isEmpty()) {
-                if (weatherIcon != null) {
-                    canvas.drawBitmap(weatherIcon, null, weatherIconRect, mTimeTextPaint);
-                }
-                if (high != null && low != null) {
-                    canvas.drawText(high, mHighXOffset, mWeatherYOffset, mHighTextPaint);
-                    canvas.drawText(low, mLowXOffset, mWeatherYOffset, mLowTextPaint);
-                }
-            }
+            mRenderer.draw(canvas, bounds, System.currentTimeMillis(), isInAmbientMode(),
+                    mPeekCardShown);
         }
 
         /**
@@ -0,0 +1,314 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/*
+Draws the watch face.  Runs every second in interactive mode, so drawing a frame allocates
+nothing: the time is written into a reused char[] when the minute changes, and the date is
+formatted again only when the day does.
+
+Everything but the time is drawn into a layer, an offscreen bitmap that each frame copies to
+the screen before drawing the time over it.  A layer is only drawn again once invalidated, by
+new weather, a new background color, a new day, time zone or shape, or a peek card coming or
+going.  Interactive, ambient and low-bit ambient mode each get their own layer, made when the
+mode is first drawn.
+ */
+class WatchFaceRenderer {
+    private static final Typeface NORMAL_TYPEFACE =
+            Typeface.create(Typeface.SANS_SERIF, Typeface.NORMAL);
+    private static final Typeface BOLD_TYPEFACE =
+            Typeface.create(Typeface.SANS_SERIF, Typeface.BOLD);
+
+    private static final long MINUTE_MS = 60 * 1000;
+
+    private static final int LAYER_INTERACTIVE = 0;
+    private static final int LAYER_AMBIENT = 1;
+    private static final int LAYER_LOW_BIT_AMBIENT = 2;
+    private static final int LAYER_COUNT = 3;
+
+    final Paint mBackgroundPaint;
+    final Paint mTimeTextPaint;
+    final Paint mDateTextPaint;
+    final Paint mLowTextPaint;
+    final Paint mHighTextPaint;
+    // For the corner mark and the weather icon, which only the layers draw
+    private final Paint mLayerPaint;
+
+    float mTimeXOffset;
+    float mTimeYOffset;
+    float mDateXOffset;
+    float mDateYOffset;
+    float mWeatherYOffset;
+    float mHighXOffset;
+    float mLowXOffset;
+    final Rect mWeatherIconRect;
+
+    String mWeatherString;
+    String mHigh;
+    String mLow;
+    Bitmap mWeatherIcon;
+
+    private final Calendar mCalendar = Calendar.getInstance();
+    private SimpleDateFormat mDateFormat;
+
+    // The time as "h:mm", which is never longer than "12:00"
+    private final char[] mTimeChars = new char[5];
+    private int mTimeLength;
+    // The minute the time shows, from its start up to but not including its end
+    private long mMinuteStartMillis;
+    private long mMinuteEndMillis;
+    private String mDateText;
+    private int mDateYear = -1;
+    private int mDateDayOfYear = -1;
+
+    // Whether the display has fewer bits per color in ambient mode, so text isn't anti-aliased
+    private boolean mLowBitAmbient;
+    private final Bitmap[] mLayers = new Bitmap[LAYER_COUNT];
+    private final Canvas[] mLayerCanvases = new Canvas[LAYER_COUNT];
+    private final boolean[] mLayerValid = new boolean[LAYER_COUNT];
+    // What the layers show a peek card over
+    private boolean mLayersPeekCardShown;
+    // How many times a layer has been drawn, for tests
+    int mLayerDraws;
+
+    WatchFaceRenderer(Resources resources) {
+        mTimeYOffset = resources.getDimension(R.dimen.time_y_offset);
+        mWeatherYOffset = resources.getDimension(R.dimen.weather_y_offset);
+        mDateYOffset = resources.getDimension(R.dimen.date_y_offset);
+        mHighXOffset = resources.getDimension(R.dimen.weather_y_offset);
+        mLowXOffset = resources.getDimension(R.dimen.weather_y_offset);
+        mBackgroundPaint = new Paint();
+        mBackgroundPaint.setColor(resources.getColor(R.color.background));
+        mTimeTextPaint = createTextPaint(resources.getColor(R.color.digital_text), NORMAL_TYPEFACE);
+        mDateTextPaint = createTextPaint(resources.getColor(R.color.digital_text), NORMAL_TYPEFACE);
+        mLowTextPaint = createTextPaint(resources.getColor(R.color.digital_text), NORMAL_TYPEFACE);
+        mHighTextPaint = createTextPaint(resources.getColor(R.color.digital_text), BOLD_TYPEFACE);
+        mLayerPaint = new Paint();
+        mLayerPaint.setColor(resources.getColor(R.color.digital_text));
+        int weatherIconSize = 60;
+        int weatherIconLeft = 55;
+        int weatherIconTop = 210;
+        mWeatherIconRect = new Rect(
+                weatherIconLeft,
+                weatherIconTop,
+                weatherIconLeft + weatherIconSize,
+                weatherIconTop + weatherIconSize);
+        initFormats();
+    }
+
+    private static Paint createTextPaint(int textColor, Typeface typeface) {
+        Paint paint = new Paint();
+        paint.setColor(textColor);
+        paint.setTypeface(typeface);
+        paint.setAntiAlias(true);
+        return paint;
+    }
+
+    /**
+     * Loads the offsets and text sizes that differ between round and square watches.
+     */
+    void setRound(Resources resources, boolean isRound) {
+        mTimeXOffset = resources.getDimension(isRound
+                ? R.dimen.time_x_offset_round : R.dimen.time_x_offset_square);
+        mHighXOffset = resources.getDimension(isRound
+                ? R.dimen.high_x_offset_round : R.dimen.high_x_offset_square);
+        mLowXOffset = resources.getDimension(isRound
+                ? R.dimen.low_x_offset_round : R.dimen.low_x_offset_square);
+        mDateXOffset = resources.getDimension(isRound
+                ? R.dimen.date_x_offset_round : R.dimen.date_x_offset_square);
+        float timeTextSize = resources.getDimension(isRound
+                ? R.dimen.time_text_size_round : R.dimen.time_text_size_square);
+        float dateTextSize = resources.getDimension(isRound
+                ? R.dimen.date_text_size_round : R.dimen.date_text_size_square);
+        float temperatureTextSize = resources.getDimension(isRound
+                ? R.dimen.temperature_text_size_round : R.dimen.temperature_text_size_square);
+
+        mTimeTextPaint.setTextSize(timeTextSize);
+        mDateTextPaint.setTextSize(dateTextSize);
+        mHighTextPaint.setTextSize(temperatureTextSize);
+        mLowTextPaint.setTextSize(temperatureTextSize);
+        invalidateLayers();
+    }
+
+    void setLowBitAmbient(boolean lowBitAmbient) {
+        mLowBitAmbient = lowBitAmbient;
+    }
+
+    /**
+     * Has the layers drawn again before the next frame.  Call after changing the weather or the
+     * paints.
+     */
+    void invalidateLayers() {
+        for (int i = 0; i < LAYER_COUNT; i++) {
+            mLayerValid[i] = false;
+        }
+    }
+
+    /**
+     * Picks up the current time zone and locale, which the time and date are rebuilt for.
+     */
+    void onTimeZoneChanged() {
+        mCalendar.setTimeZone(TimeZone.getDefault());
+        initFormats();
+        mMinuteEndMillis = 0;
+        mDateYear = -1;
+        invalidateLayers();
+    }
+
+    private void initFormats() {
+        mDateFormat = new SimpleDateFormat("EE, MMM dd yyyy", Locale.getDefault());
+        mDateFormat.setCalendar(mCalendar);
+    }
+
+    void draw(Canvas canvas, Rect bounds, long now, boolean ambient, boolean peekCardShown) {
+        if (now < mMinuteStartMillis || now >= mMinuteEndMillis) {
+            updateTime(now);
+        }
+        if (peekCardShown != mLayersPeekCardShown) {
+            mLayersPeekCardShown = peekCardShown;
+            invalidateLayers();
+        }
+
+        int layer = ambient ? (mLowBitAmbient ? LAYER_LOW_BIT_AMBIENT : LAYER_AMBIENT)
+                : LAYER_INTERACTIVE;
+        canvas.drawBitmap(getLayer(layer, bounds), 0, 0, null);
+
+        boolean antiAlias = layer != LAYER_LOW_BIT_AMBIENT;
+        if (mTimeTextPaint.isAntiAlias() != antiAlias) {
+            mTimeTextPaint.setAntiAlias(antiAlias);
+        }
+        canvas.drawText(mTimeChars, 0, mTimeLength, mTimeXOffset, mTimeYOffset, mTimeTextPaint);
+    }
+
+    private Bitmap getLayer(int layer, Rect bounds) {
+        Bitmap bitmap = mLayers[layer];
+        if (null == bitmap
+                || bitmap.getWidth() != bounds.width() || bitmap.getHeight() != bounds.height()) {
+            if (null != bitmap) {
+                bitmap.recycle();
+            }
+            bitmap = Bitmap.createBitmap(bounds.width(), bounds.height(), Bitmap.Config.ARGB_8888);
+            mLayers[layer] = bitmap;
+            mLayerCanvases[layer] = new Canvas(bitmap);
+            mLayerValid[layer] = false;
+        }
+        if (!mLayerValid[layer]) {
+            drawLayer(mLayerCanvases[layer], bounds, layer);
+            mLayerValid[layer] = true;
+            mLayerDraws++;
+        }
+        return bitmap;
+    }
+
+    // Draws everything but the time
+    private void drawLayer(Canvas canvas, Rect bounds, int layer) {
+        // Draw the background.
+        if (layer != LAYER_INTERACTIVE) {
+            canvas.drawColor(Color.BLACK);
+        } else {
+            canvas.drawRect(0, 0, bounds.width(), bounds.height(), mBackgroundPaint);
+        }
+
+        // Low-bit ambient screens can't show anti-aliased edges or filtered bitmaps
+        boolean antiAlias = layer != LAYER_LOW_BIT_AMBIENT;
+        mLayerPaint.setAntiAlias(antiAlias);
+        mLayerPaint.setFilterBitmap(antiAlias);
+        mDateTextPaint.setAntiAlias(antiAlias);
+        mHighTextPaint.setAntiAlias(antiAlias);
+        mLowTextPaint.setAntiAlias(antiAlias);
+
+        canvas.drawRect(0, 0, 5, 5, mLayerPaint);
+        canvas.drawText(mDateText, mDateXOffset, mDateYOffset, mDateTextPaint);
+
+        if (!mLayersPeekCardShown) {
+            if (mWeatherIcon != null) {
+                canvas.drawBitmap(mWeatherIcon, null, mWeatherIconRect, mLayerPaint);
+            }
+            if (mHigh != null && mLow != null) {
+                canvas.drawText(mHigh, mHighXOffset, mWeatherYOffset, mHighTextPaint);
+                canvas.drawText(mLow, mLowXOffset, mWeatherYOffset, mLowTextPaint);
+            }
+        }
+    }
+
+    /**
+     * Frees the layers; they're made again when next drawn.
+     */
+    void release() {
+        for (int i = 0; i < LAYER_COUNT; i++) {
+            if (null != mLayers[i]) {
+                mLayers[i].recycle();
+                mLayers[i] = null;
+                mLayerCanvases[i] = null;
+            }
+            mLayerValid[i] = false;
+        }
+    }
+
+    // Rebuilds the time for the minute that now falls in, and the date if the day changed too
+    private void updateTime(long now) {
+        mCalendar.setTimeInMillis(now);
+        int hour = mCalendar.get(Calendar.HOUR);
+        int minute = mCalendar.get(Calendar.MINUTE);
+        if (hour == 0) {
+            hour = 12;
+        }
+        int length = 0;
+        if (hour >= 10) {
+            mTimeChars[length++] = (char) ('0' + hour / 10);
+        }
+        mTimeChars[length++] = (char) ('0' + hour % 10);
+        mTimeChars[length++] = ':';
+        mTimeChars[length++] = (char) ('0' + minute / 10);
+        mTimeChars[length++] = (char) ('0' + minute % 10);
+        mTimeLength = length;
+
+        mMinuteStartMillis = now - mCalendar.get(Calendar.SECOND) * 1000
+                - mCalendar.get(Calendar.MILLISECOND);
+        mMinuteEndMillis = mMinuteStartMillis + MINUTE_MS;
+
+        int year = mCalendar.get(Calendar.YEAR);
+        int dayOfYear = mCalendar.get(Calendar.DAY_OF_YEAR);
+        if (year != mDateYear || dayOfYear != mDateDayOfYear) {
+            mDateText = mDateFormat.format(mCalendar.getTime());
+            mDateYear = year;
+            mDateDayOfYear = dayOfYear;
+            invalidateLayers();
+        }
+    }
+
+    String getTimeText() {
+        return new String(mTimeChars, 0, mTimeLength);
+    }
+
+    String getDateText() {
+        return mDateText;
+    }
+}